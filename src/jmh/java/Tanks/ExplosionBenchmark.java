@@ -0,0 +1,50 @@
+package Tanks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Level; // Not Tanks.Level
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Damage application for a finished explosion against the tanks the index finds near it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExplosionBenchmark {
+
+    @Param({"864", "13824"})
+    public int mapWidth;
+
+    @Param({"9", "100", "1000"})
+    public int tankCount;
+
+    private Explosion[] explosions;
+    private int explosionIndex;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Terrain terrain = Fixtures.terrain(mapWidth);
+        ArrayList<Tank> tanks = Fixtures.tanks(terrain, new Scoreboard(Fixtures.config()), tankCount);
+        TankIndex tankIndex = new TankIndex(terrain.getWidth());
+        tanks.forEach(tankIndex::add);
+        // Half the explosions land on a tank, half in open ground
+        explosions = new Explosion[64];
+        for (int i = 0; i < explosions.length; i++) {
+            Tank target = tanks.get(i % tanks.size());
+            float x = i % 2 == 0 ? target.getX() : (i * 97) % terrain.getWidth();
+            explosions[i] = new Explosion(x, terrain.getHeightAtX(x), terrain, tankIndex, tanks.get(0));
+        }
+        explosionIndex = 0;
+    }
+
+    @Benchmark
+    public void applyDamageToTanks() {
+        explosionIndex = (explosionIndex + 1) & (explosions.length - 1);
+        explosions[explosionIndex].applyDamageToTanks();
+    }
+}
@@ -0,0 +1,62 @@
+package Tanks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Level; // Not Tanks.Level
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Targeting queries against a firing table, next to the cost of building the table and of tracing one
+ * shot, which is what answering a query by simulation would cost per candidate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FiringTableBenchmark {
+
+    private Terrain terrain;
+    private FiringTable table;
+    private TrajectoryPreview tracer;
+    private float[] targets;
+    private int[] winds;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        terrain = Fixtures.terrain(App.WIDTH);
+        table = new FiringTable(terrain, 200, terrain.getHeightAtX(200));
+        tracer = new TrajectoryPreview();
+        Random random = new Random(Fixtures.SEED);
+        targets = new float[1024];
+        winds = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = 30 + random.nextInt(App.WIDTH - 60);
+            winds[i] = random.nextInt(71) - 35;
+        }
+    }
+
+    @Benchmark
+    public FiringTable.Solution solve() {
+        query = (query + 1) & (targets.length - 1);
+        return table.solve(targets[query], winds[query], 100);
+    }
+
+    @Benchmark
+    public float traceOneShot() {
+        query = (query + 1) & (targets.length - 1);
+        tracer.trace(terrain, 200, terrain.getHeightAtX(200), 40, 50, winds[query]);
+        return tracer.getEndX();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public FiringTable build() {
+        FiringTable built = new FiringTable(terrain, 200, terrain.getHeightAtX(200));
+        built.dispose();
+        return built;
+    }
+}
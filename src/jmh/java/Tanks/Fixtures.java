@@ -0,0 +1,50 @@
+package Tanks;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Builds headless game state of a given size for the benchmarks. Everything is seeded so each
+ * run measures the same terrain, tank layout and shots.
+ */
+final class Fixtures {
+    static final long SEED = 42;
+
+    private Fixtures() {
+    }
+
+    static GameConfig config() {
+        return new GameConfig("config.json");
+    }
+
+    /**
+     * @param mapWidth width of the map in pixels, rounded down to whole 32 pixel columns
+     * @return rolling terrain between 4 and 12 cells high
+     */
+    static Terrain terrain(int mapWidth) {
+        Random random = new Random(SEED);
+        int[] heights = new int[mapWidth / App.CELLSIZE];
+        int height = 8;
+        for (int i = 0; i < heights.length; i++) {
+            height = Math.max(4, Math.min(12, height + random.nextInt(3) - 1));
+            heights[i] = height;
+        }
+        Terrain terrain = new Terrain(mapWidth, App.HEIGHT, 0);
+        terrain.loadHeights(heights);
+        return terrain;
+    }
+
+    /**
+     * @return tanks spread evenly across the terrain, each sitting on the surface
+     */
+    static ArrayList<Tank> tanks(Terrain terrain, Scoreboard scoreboard, int tankCount) {
+        ArrayList<Tank> tanks = new ArrayList<>();
+        float spacing = (terrain.getWidth() - 60) / (float) tankCount;
+        for (int i = 0; i < tankCount; i++) {
+            float x = 30 + spacing * i;
+            char identifier = (char) ('A' + i % 9);
+            tanks.add(new Tank(x, terrain.getHeightAtX(x), 0, terrain, identifier, scoreboard));
+        }
+        return tanks;
+    }
+}
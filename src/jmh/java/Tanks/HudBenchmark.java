@@ -0,0 +1,70 @@
+package Tanks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Level; // Not Tanks.Level
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Score bookkeeping and colour lookups that the HUD performs for every player every frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HudBenchmark {
+
+    private GameConfig config;
+    private Scoreboard scoreboard;
+    private int playerIndex;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        config = Fixtures.config();
+        scoreboard = new Scoreboard(config);
+        for (char id = 'A'; id <= 'I'; id++) {
+            scoreboard.registerTank(id);
+        }
+        playerIndex = 0;
+    }
+
+    private char nextPlayer() {
+        playerIndex = (playerIndex + 1) % 9;
+        return (char) ('A' + playerIndex);
+    }
+
+    @Benchmark
+    public void updateScore() {
+        scoreboard.updateScore(nextPlayer(), 1);
+    }
+
+    /**
+     * What the HUD scoreboard looks up to draw a frame in which no score changed.
+     */
+    @Benchmark
+    public void scoreboardRows(Blackhole blackhole) {
+        for (Scoreboard.Row row : scoreboard.getRows()) {
+            blackhole.consume(row.getColour());
+            blackhole.consume(scoreboard.getText(row));
+        }
+    }
+
+    /**
+     * Player A has a fixed colour in config.json, so this is the parse path.
+     */
+    @Benchmark
+    public int getPlayerColourFixed() {
+        return config.getPlayerColour('A');
+    }
+
+    /**
+     * Player F is configured as "random", so this is the random colour path.
+     */
+    @Benchmark
+    public int getPlayerColourRandom() {
+        return config.getPlayerColour('F');
+    }
+}
@@ -0,0 +1,61 @@
+package Tanks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Level; // Not Tanks.Level
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One tick of the projectile system: movement, tank and terrain impact checks for every live shell.
+ * Shells that land are replaced with a fresh shot, as the game does on the next turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProjectileBenchmark {
+
+    @Param({"864", "13824"})
+    public int mapWidth;
+
+    @Param({"1", "100", "10000"})
+    public int projectileCount;
+
+    private Terrain terrain;
+    private Tank owner;
+    private TankIndex tankIndex;
+    private ProjectileSystem projectiles;
+    private ArrayList<Explosion> explosions;
+    private Random random;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        terrain = Fixtures.terrain(mapWidth);
+        owner = Fixtures.tanks(terrain, new Scoreboard(Fixtures.config()), 1).get(0);
+        tankIndex = new TankIndex(terrain.getWidth());
+        projectiles = new ProjectileSystem();
+        explosions = new ArrayList<>();
+        random = new Random(Fixtures.SEED);
+        refill();
+    }
+
+    private void refill() {
+        while (projectiles.size() < projectileCount) {
+            float x = 30 + random.nextInt(terrain.getWidth() - 60);
+            projectiles.spawn(x, terrain.getHeightAtX(x) - 20, random.nextInt(181) - 90, 20 + random.nextInt(81), random.nextInt(71) - 35, owner);
+        }
+    }
+
+    @Benchmark
+    public int updateAndCheckImpact() {
+        projectiles.update(explosions, terrain, tankIndex);
+        int impacts = explosions.size();
+        explosions.clear();
+        refill();
+        return impacts;
+    }
+}
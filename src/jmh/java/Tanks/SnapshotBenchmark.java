@@ -0,0 +1,57 @@
+package Tanks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Level; // Not Tanks.Level
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Taking and restoring a snapshot of a match in progress, with a shell in the air and a crater to undo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    private Simulation simulation;
+    private GameSnapshot snapshot;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        simulation = new Simulation(Fixtures.config(), App.WIDTH, App.HEIGHT, Fixtures.SEED);
+        simulation.step(EnumSet.of(Action.FIRE));
+        while (simulation.getProjectiles().size() > 0) {
+            simulation.step();
+        }
+        simulation.step(EnumSet.of(Action.FIRE));
+        snapshot = simulation.snapshot();
+    }
+
+    @Benchmark
+    public long snapshot() {
+        simulation.snapshot(snapshot);
+        return snapshot.getTick();
+    }
+
+    @Benchmark
+    public long restore() {
+        simulation.restore(snapshot);
+        return simulation.getTick();
+    }
+
+    /**
+     * Steps on until the shell lands and craters the terrain, then rolls back, as a lookahead search would.
+     */
+    @Benchmark
+    public long stepAndRollBack() {
+        for (int i = 0; i < 30; i++) {
+            simulation.step();
+        }
+        simulation.restore(snapshot);
+        return simulation.getTick();
+    }
+}
@@ -0,0 +1,49 @@
+package Tanks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.Level; // Not Tanks.Level
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Height lookups across the whole map and crater carving at spread-out points.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TerrainBenchmark {
+
+    @Param({"864", "3456", "13824"})
+    public int mapWidth;
+
+    private Terrain terrain;
+    private int explosionIndex;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        terrain = Fixtures.terrain(mapWidth);
+        explosionIndex = 0;
+    }
+
+    /**
+     * One lookup per pixel column, the pattern trees, tanks and projectiles produce together.
+     */
+    @Benchmark
+    public void getHeightAtXAcrossMap(Blackhole blackhole) {
+        int width = terrain.getWidth();
+        for (int x = 0; x < width; x++) {
+            blackhole.consume(terrain.getHeightAtX(x + 0.5f));
+        }
+    }
+
+    @Benchmark
+    public void destroyTerrain() {
+        // Walk the explosion along the map with a stride that is co-prime to the column size
+        explosionIndex = (explosionIndex + 97) % terrain.getWidth();
+        terrain.destroyTerrain(explosionIndex, terrain.getHeightAtX(explosionIndex), 30, null);
+    }
+}
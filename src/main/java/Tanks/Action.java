@@ -0,0 +1,36 @@
+package Tanks;
+
+import java.util.EnumSet;
+
+/**
+ * Commands a player can give the simulation. Keyboard input is translated into these in App,
+ * so anything else that drives a match (tests, bots, tools) goes through the same path.
+ * When several actions arrive in the same tick they are applied in declaration order, which is
+ * why FIRE comes after everything that adjusts or buys for the current tank.
+ */
+public enum Action {
+    TURRET_LEFT,
+    TURRET_RIGHT,
+    MOVE_LEFT,
+    MOVE_RIGHT,
+    POWER_UP,
+    POWER_DOWN,
+    REPAIR,
+    REFUEL,
+    SHIELD,
+    PARACHUTE,
+    FIRE,
+    RESTART;
+
+    /**
+     * Actions that keep applying on every tick for as long as their key is held down.
+     */
+    public static final EnumSet<Action> CONTINUOUS = EnumSet.of(TURRET_LEFT, TURRET_RIGHT, MOVE_LEFT, MOVE_RIGHT, POWER_UP, POWER_DOWN);
+
+    /**
+     * @return true if this action repeats every tick while held rather than once per key press
+     */
+    public boolean isContinuous() {
+        return CONTINUOUS.contains(this);
+    }
+}
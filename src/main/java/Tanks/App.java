@@ -3,6 +3,8 @@ package Tanks;
 import processing.core.*;
 import processing.event.*;
 
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 
@@ -22,25 +24,25 @@ public class App extends PApplet {
     public static final int INITIAL_PARACHUTES = 1;
 
     public static final int FPS = 30;
+    private static final int PROFILER_KEY = 114; // F3 shows and hides the frame profile
 
     public String configPath;
 
-    public static Random random = new Random();
-
-    private Terrain terrain;
     private GameConfig config;
-    private Wind wind;
-    private Scoreboard scoreboard;
-    ArrayList<Tank> tanks;
-    private int currentTankIndex = 0; 
-    private ArrayList<Tree> trees;
-    PImage treeImage;
-    private ArrayList<Explosion> explosions;
-    private boolean waitingForNextLevel = false;
-    private int levelTransitionStartTime;
-    private static final int LEVEL_TRANSITION_DELAY = 1000; 
-    PImage parachutImage;
-    private boolean displayFinalScoreboard = false;
+    private Simulation simulation;
+    private SimulationClock clock;
+    private int preloadedLevelIndex = -1; // Next level whose images have been sent off to decode
+    private TrajectoryPreview trajectoryPreview = new TrajectoryPreview(); // Aiming guide for the active tank
+    private EnumSet<Action> heldActions = EnumSet.noneOf(Action.class); // Continuous actions whose key is down
+    private EnumSet<Action> pendingActions = EnumSet.noneOf(Action.class); // Actions pressed since the last tick
+    private ComputerPlayer computer; // Plays the tanks the config hands to the computer
+    private Replay replay; // When watching a replay, the source of every action instead of the keys
+    private double replaySpeed = 1;
+    private ReplayRecorder recorder;
+    private NetworkSession network; // When playing over the network, runs the simulation with the other peers
+    private final FrameProfiler profiler = new FrameProfiler(FPS);
+    private String turnText; // Built again only when the turn passes to another tank
+    private char turnTextTank;
 
 
 
@@ -66,203 +68,65 @@ public class App extends PApplet {
 	@Override
     public void setup() {
         frameRate(FPS);
-        config = new GameConfig(this, "config.json"); // Initialize game configuration
-        initializeEnvironment(); // Setup wind, scoreboard, etc. before initializing game objects
-        initializeTerrain(); // Load and setup the terrain
-        initializeGameObjects(); // Setup tanks and possibly other objects
-        scoreboard.initializeScores(tanks); // Initialize scores after tanks are fully created
-        explosions = new ArrayList<>();
-    }
-    
-
-
-
-    private void initializeTerrain() {
-        PImage treeImage = config.getTreeImage();  // Retrieve the tree image
-        int foregroundColour = config.getForegroundColour();  // Retrieve the foreground Colour
-        terrain = new Terrain(this, treeImage, foregroundColour);   // Initialize terrain with the tree image
-        terrain.loadTerrain(config.getLayoutFilename());  // Load the terrain layout
-    }
-    
-
-    private void initializeGameObjects() {
-        tanks = new ArrayList<>();
-        trees = new ArrayList<>();
-        String[] lines = loadStrings("level1.txt");  // Load level configuration
-    
-        for (int row = 0; row < lines.length; row++) {
-            for (int col = 0; col < lines[row].length(); col++) {
-                char ch = lines[row].charAt(col);
-    
-                if (ch >= 'A' && ch <= 'I') {  // Create tank if character is between A and I
-                    int tankColour = config.getPlayerColour(ch);
-                    Tank tank = new Tank(this, col * CELLSIZE + CELLSIZE / 2.0f, terrain.getHeightAtX(col * CELLSIZE + CELLSIZE / 2.0f), tankColour, terrain, ch, scoreboard);
-                    tanks.add(tank);
-                    scoreboard.registerTank(tank.getIdentifier());
-                    scoreboard.updateScore(ch, 0);  // Initialize tank's score in scoreboard when tank is created
-                } else if (ch == 'T') {
-                    Tree tree = new Tree(this, config.getTreeImage(), col * CELLSIZE + CELLSIZE / 2.0f, terrain);
-                    trees.add(tree);
-                }
+        if (network != null) {
+            simulation = network.getSimulation();
+            config = simulation.getConfig();
+            clock = new SimulationClock();
+        } else if (replay != null) {
+            simulation = replay.newSimulation();
+            config = simulation.getConfig();
+            clock = new SimulationClock(replaySpeed);
+        } else {
+            config = new GameConfig(configPath); // Initialize game configuration
+            simulation = new Simulation(config, WIDTH, HEIGHT); // Load the first level, its terrain, tanks and trees
+            clock = new SimulationClock();
+            computer = new ComputerPlayer(config);
+            if (config.getReplayDirectory() != null) {
+                String name = "match-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".replay";
+                recorder = ReplayRecorder.record(Paths.get(config.getReplayDirectory(), name), configPath, simulation, WIDTH, HEIGHT);
             }
         }
-        
-        //lambda function tanks to be sorted by identifier
-        tanks.sort((tank1, tank2) -> Character.compare(tank1.getIdentifier(), tank2.getIdentifier()));
-
-        if (!tanks.isEmpty()) {
-            tanks.get(0).setActive(true); // Explicitly set the first tank as active
-            currentTankIndex = 0; // Ensure the index is set to the start
-        }
+        simulation.setProfiler(profiler);
+        GameMetrics.shared().watch(simulation);
+        GameMetrics.shared().register();
+        profiler.start(config.getProfileDirectory(), config.getProfileIntervalSeconds());
     }
-    
 
-    private void initializeEnvironment() {
-        wind = new Wind(this);
-        scoreboard = new Scoreboard(this, config);
-    }
-
-    /**
-     * Goes to the next tanks turn
-     */
-    public void nextTurn() {
-        if (!tanks.isEmpty() && currentTankIndex < tanks.size()) {
-            tanks.get(currentTankIndex).setActive(false);
-        }
-    
-        // Increment to the next tank
-        currentTankIndex = (currentTankIndex + 1) % tanks.size();
-        tanks.get(currentTankIndex).setActive(true);
-        tanks.get(currentTankIndex).startTurn(millis());  // Pass the current time
-    
-        // Update the wind or any other environmental effects
-        if (wind != null) {
-            wind.updateWind();
-        }
-    }
-    
     /**
-     * Restarts the game by reloading the first level
-     * Reinitalises most game objects and resets scoreboard and wind
+     * Plays a recorded match instead of a live one. Must be called before the sketch starts.
+     * @param replay the match to play
+     * @param speed how many times faster than real time to play it
      */
-    private void restartGame() {
-        config.resetGame(); // Load the first level configuration
-        
-        initializeTerrain(); // Reset and redraw the terrain based on the first level
-        initializeGameObjects(); // Reinitialize tanks and other objects based on the first level
-        scoreboard.resetScores(); // Explicitly reset the scoreboard scores
-        scoreboard.initializeScores(tanks); // (Optional) Reinitialize scores based on the new game state
-        scoreboard.resetDisplayState();
-
-        wind = new Wind(this); // Reinitialize the wind
-        displayFinalScoreboard = false; // Ensure final scoreboard is not displayed unless game ends
-        waitingForNextLevel = false; // Reset waiting for next level flag
-        currentTankIndex = 0; // Start from the first tank again
-        tanks.get(currentTankIndex).setActive(true); // Ensure the first tank is active
+    public void playReplay(Replay replay, double speed) {
+        this.replay = replay;
+        this.replaySpeed = speed;
     }
 
     /**
-     * Checks if config has another level. If not displayFinalScoreBoard is active
-     * Reinitializes game objects for next level once that level is loaded.
-     */
-
-    public void checkEndOfLevel() {
-        // Check if there's only one tank left or if all tanks are inactive
-        if (tanks.size() == 1 && !waitingForNextLevel) {
-            waitingForNextLevel = true;
-            levelTransitionStartTime = millis();
-            // Check if there are more levels to play
-            if (!config.hasNextLevel()) {
-                displayFinalScoreboard = true; // Only display final scoreboard if no more levels
-            }
-        } else if (waitingForNextLevel && millis() - levelTransitionStartTime > LEVEL_TRANSITION_DELAY) {
-            waitingForNextLevel = false;
-            if (config.hasNextLevel()) {
-                config.loadNextLevel(); // Load the next level configuration
-                initializeTerrain();    // Reinitialize the terrain with the new level data
-                initializeGameObjects(); // Re-setup tanks and other objects for the new level
-            } 
-        }
-    }
-    
-    /**
-     * Updates explosions and tanks' positions on the terrain.
+     * Plays a match over the network instead of on one keyboard. Must be called before the sketch starts.
+     * @param network this peer's session, whose simulation is shown and whose tanks the keys control
      */
-    public void updateExplosionsAndTanks() {
-        Iterator<Explosion> explosionIterator = explosions.iterator();
-        while (explosionIterator.hasNext()) {
-            Explosion explosion = explosionIterator.next();
-            explosion.update(); // Update explosion
-            if (!explosion.isActive()) {
-                explosionIterator.remove(); // Remove inactive explosions
-            }
-        }
-    
-        for (Tank tank : tanks) {
-            float terrainHeight = terrain.getHeightAtX(tank.getX());
-            if (tank.getY() > terrainHeight) {
-                tank.setY(tank.getY());
-                if (tank.getY() > this.height) { // Check if the tank is below the screen
-                    tank.setActive(false);
-                }
-            } else {
-                tank.recalibratePosition(); // Adjust tank position based on terrain
-            }
-        }
+    public void playNetworked(NetworkSession network) {
+        this.network = network;
     }
 
-
     /**
-     * Removes tanks that fall through the terrain
+     * Finishes the replay being recorded, writes the last of the frame profile and leaves any networked match
+     * when the window closes.
      */
-    public void removeOffscreenTanks() {
-        Iterator<Tank> iterator = tanks.iterator();
-        while (iterator.hasNext()) {
-            Tank tank = iterator.next();
-            if (tank.getY() >= height) {  // Check if the tank is below the screen
-                if (tank.isActive()) {
-                }
-                iterator.remove();
-            }
-        }
-    }
-    
-    /**
-     * Removes tanks that are no longer active, either from falling through the map
-     * or having < 0 health.
-     */
-    public void removeInactiveTanks() {
-        Iterator<Tank> iterator = tanks.iterator();
-        while (iterator.hasNext()) {
-            Tank tank = iterator.next();
-            if (!tank.isActive() && tank.getHealth() <= 0) {
-                iterator.remove();  // Remove the tank from the list
-            }
-        }
-    
-        // Ensure the currentTankIndex is still valid
-        if (currentTankIndex >= tanks.size()) {
-            currentTankIndex = 0;  // Reset to the first tank if the previous active tank was the last one
-        }
-        // Check if there are any active tanks left
-        if (!tanks.isEmpty() && !tanks.get(currentTankIndex).isActive()) {
-            nextTurn(); // Move to the next available tank
+    @Override
+    public void dispose() {
+        profiler.close();
+        if (network != null) {
+            network.close();
+            network = null;
         }
-    }
-    
-
-    /**
-     * Removes trees if they fall below the screen.
-     */
-    public void removeOffscreenTrees() {
-        Iterator<Tree> treeIterator = trees.iterator();
-        while (treeIterator.hasNext()) {
-            Tree tree = treeIterator.next();
-            // Check if the bottom of the tree is below the height of the screen
-            if (tree.getY() + tree.getTreeImageHeight() >= height) {
-                treeIterator.remove(); // Remove the tree from the list
-            }
+        if (recorder != null) {
+            recorder.setEndTick(simulation.getTick());
+            recorder.close();
+            recorder = null;
         }
+        super.dispose();
     }
 
 
@@ -270,9 +134,12 @@ public class App extends PApplet {
      * Displays which player's turn it is.
      */
     public void displayTurnInfo() {
-        if (currentTankIndex >= 0 && currentTankIndex < tanks.size()) {  // Check if index is valid
-            Tank currentTank = tanks.get(currentTankIndex);
-            String turnText = "Player " + currentTank.getIdentifier() + "'s Turn";
+        Tank currentTank = simulation.getCurrentTank();
+        if (currentTank != null) {  // Check if there is a tank whose turn it is
+            if (turnText == null || currentTank.getIdentifier() != turnTextTank) {
+                turnTextTank = currentTank.getIdentifier();
+                turnText = "Player " + turnTextTank + "'s Turn";
+            }
             textSize(16);
             fill(0);
             textAlign(PApplet.LEFT, PApplet.TOP);
@@ -286,66 +153,67 @@ public class App extends PApplet {
      */
     @Override
     public void keyPressed(KeyEvent event) {
-        if (tanks.size() > 0 && currentTankIndex < tanks.size()) {
-            Tank currentTank = tanks.get(currentTankIndex);
-
-            switch (event.getKeyCode()) {
-                case PApplet.UP:
-                    currentTank.rotateTurretLeft();
-                    break;
-                case PApplet.DOWN:
-                    currentTank.rotateTurretRight();
-                    break;
-                case PApplet.LEFT:
-                    currentTank.moveLeft();
-                    break;
-                case PApplet.RIGHT:
-                    currentTank.moveRight();
-                    break;
-                case ' ':
-                    currentTank.fire(wind, explosions, terrain, tanks);
-                    nextTurn();
-                    break;
-                case 'W':
-                case 'w':
-                    currentTank.increasePower();
-                    break;
-                case 'S':
-                case 's':
-                    currentTank.decreasePower();
-                    break;
-                case 'R':
-                case 'r':
-                    if (!displayFinalScoreboard) {
-                        currentTank.repair();
-                    } else {
-                        restartGame();
-                    }
-                    break;  
-                case 'F':
-                case 'f':
-                    currentTank.refuel(); 
-                    break;
-                case 'H':
-                case 'h':
-                    tanks.get(currentTankIndex).activateShield();
-                    break;
-                case 'P':
-                case 'p':
-                    currentTank.purchaseParachute(); 
-                    break;
+        if (event.getKeyCode() == PROFILER_KEY) {
+            profiler.toggleVisible();
+            return;
+        }
+        Action action = actionForKey(event);
+        if (action != null) {
+            pendingActions.add(action); // Applied on the next tick, even if the key is released before then
+            if (action.isContinuous()) {
+                heldActions.add(action);
             }
         }
     }
-    
-    
 
     /**
      * Receive key released signal from the keyboard.
      */
-	@Override
-    public void keyReleased(){
-        
+    @Override
+    public void keyReleased(KeyEvent event) {
+        Action action = actionForKey(event);
+        if (action != null) {
+            heldActions.remove(action);
+        }
+    }
+
+    /**
+     * Maps a key to the simulation action it controls.
+     * @param event the key event
+     * @return the matching action, or null if the key does nothing
+     */
+    private Action actionForKey(KeyEvent event) {
+        switch (event.getKeyCode()) {
+            case PApplet.UP:
+                return Action.TURRET_LEFT;
+            case PApplet.DOWN:
+                return Action.TURRET_RIGHT;
+            case PApplet.LEFT:
+                return Action.MOVE_LEFT;
+            case PApplet.RIGHT:
+                return Action.MOVE_RIGHT;
+            case ' ':
+                return Action.FIRE;
+            case 'W':
+            case 'w':
+                return Action.POWER_UP;
+            case 'S':
+            case 's':
+                return Action.POWER_DOWN;
+            case 'R':
+            case 'r':
+                return simulation.isGameOver() ? Action.RESTART : Action.REPAIR;
+            case 'F':
+            case 'f':
+                return Action.REFUEL;
+            case 'H':
+            case 'h':
+                return Action.SHIELD;
+            case 'P':
+            case 'p':
+                return Action.PARACHUTE;
+        }
+        return null;
     }
 
     @Override
@@ -364,53 +232,102 @@ public class App extends PApplet {
      */
     @Override
     public void draw() {
-        background(0);
-        config.displayBackground(WIDTH, HEIGHT);
-        terrain.display();
+        profiler.begin(FrameProfiler.Phase.FRAME);
+        // Run however many fixed ticks fit into the time since the last frame; rendering never changes the outcome
+        profiler.begin(FrameProfiler.Phase.SIMULATION);
+        int ticks = clock.advance(millis());
+        if (network != null) {
+            network.poll(); // Late input from other peers may roll the simulation back and forward again here
+        }
+        for (int i = 0; i < ticks; i++) {
+            if (network != null) {
+                if (network.canAdvance()) { // Otherwise another peer has fallen too far behind, so wait for it
+                    EnumSet<Action> actions = EnumSet.copyOf(heldActions);
+                    actions.addAll(pendingActions);
+                    pendingActions.clear();
+                    long start = System.nanoTime();
+                    network.advance(actions);
+                    GameMetrics.shared().recordTick(System.nanoTime() - start);
+                }
+                continue;
+            }
+            EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+            if (replay != null) {
+                replay.act(simulation, actions);
+            } else if (!computer.act(simulation, actions)) { // Keys do nothing while a computer tank has its turn
+                actions.addAll(heldActions);
+                actions.addAll(pendingActions);
+            }
+            pendingActions.clear();
+            long start = System.nanoTime();
+            simulation.step(actions);
+            GameMetrics.shared().recordTick(System.nanoTime() - start);
+        }
+        profiler.end(FrameProfiler.Phase.SIMULATION);
+        float alpha = clock.getAlpha();
+
+        // Decode the next level's images while the current level winds down, so the switch does not stall
+        int pendingLevelIndex = simulation.getPendingLevelIndex();
+        if (pendingLevelIndex >= 0 && pendingLevelIndex != preloadedLevelIndex) {
+            preloadedLevelIndex = pendingLevelIndex;
+            LevelLoader.preloadImages(this, config, pendingLevelIndex, WIDTH, HEIGHT);
+        }
 
-        if (!displayFinalScoreboard) {
+        profiler.begin(FrameProfiler.Phase.BACKGROUND);
+        background(0);
+        config.displayBackground(this, WIDTH, HEIGHT);
+        profiler.end(FrameProfiler.Phase.BACKGROUND);
+        profiler.begin(FrameProfiler.Phase.TERRAIN);
+        simulation.getTerrain().display(this);
+        profiler.end(FrameProfiler.Phase.TERRAIN);
+
+        if (!simulation.isGameOver()) {
+            profiler.begin(FrameProfiler.Phase.HUD);
             displayTurnInfo();
-            wind.displayWind();
-            scoreboard.display();
-
-            for (Tree tree : trees) {
-                tree.updatePosition();
-                tree.display();
+            simulation.getWind().displayWind(this);
+            simulation.getScoreboard().display(this);
+            profiler.end(FrameProfiler.Phase.HUD);
+
+            profiler.begin(FrameProfiler.Phase.TREES);
+            PImage treeImage = config.getTreeImage(this);
+            for (Tree tree : simulation.getTrees()) {
+                tree.display(this, treeImage);
             }
+            profiler.end(FrameProfiler.Phase.TREES);
 
-            removeOffscreenTrees();
-
-            for (Tank tank : tanks) {
-                tank.calibratePosition();
+            profiler.begin(FrameProfiler.Phase.PREVIEW);
+            Tank currentTank = simulation.getCurrentTank();
+            if (currentTank != null) {
+                trajectoryPreview.update(currentTank, simulation.getWind(), simulation.getTerrain());
+                trajectoryPreview.display(this, currentTank.getColour());
             }
+            profiler.end(FrameProfiler.Phase.PREVIEW);
 
-            Tank activeTank = null;
-            for (Tank tank : tanks) {
-                tank.updatePosition(false);
-                tank.updateProjectile(explosions, terrain, tanks);
-                tank.display();
+            profiler.begin(FrameProfiler.Phase.TANKS);
+            for (Tank tank : simulation.getTanks()) {
+                tank.display(this, simulation.getTick(), alpha);
                 if (tank.isActive()) {
-                    activeTank = tank;
-                    activeTank.displayHealthBar();
-                    activeTank.displayPower();
+                    tank.displayHealthBar(this);
+                    tank.displayPower(this);
                 }
             }
-
-            for (Explosion explosion : explosions) {
-                explosion.update();
-                explosion.display();
-                if (!explosion.isActive()) {
-                    explosions.remove(explosion);
-                }
+            profiler.end(FrameProfiler.Phase.TANKS);
+            profiler.begin(FrameProfiler.Phase.SHELLS);
+            simulation.getProjectiles().display(this, alpha);
+            profiler.end(FrameProfiler.Phase.SHELLS);
+
+            profiler.begin(FrameProfiler.Phase.EXPLOSION_DRAW);
+            for (Explosion explosion : simulation.getExplosions()) {
+                explosion.display(this);
             }
-
-            updateExplosionsAndTanks();
-            removeOffscreenTanks();
-            removeInactiveTanks();
-            checkEndOfLevel();
+            profiler.end(FrameProfiler.Phase.EXPLOSION_DRAW);
         } else {
-            scoreboard.displayFinalScoreboard();
+            profiler.begin(FrameProfiler.Phase.HUD);
+            simulation.getScoreboard().displayFinalScoreboard(this);
+            profiler.end(FrameProfiler.Phase.HUD);
         }
+        profiler.display(this); // Not timed, so showing the profile does not change it
+        profiler.endFrame();
     }
 
     public static void main(String[] args) {
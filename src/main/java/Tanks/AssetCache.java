@@ -0,0 +1,130 @@
+package Tanks;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shared cache of decoded images, keyed by path and the size they are drawn at.
+ * Every tank, the wind indicator and each level's background and trees ask this cache instead of
+ * decoding PNGs themselves, so an image is decoded once and reused across tanks, restarts and levels.
+ * Once the cached pixels exceed the byte budget the least recently used images are dropped.
+ */
+public class AssetCache {
+    private static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+    private static final AssetCache shared = new AssetCache(DEFAULT_BUDGET_BYTES);
+
+    private final long budgetBytes;
+    private long usedBytes = 0;
+    private long hits = 0, misses = 0;
+    // Access-ordered, so iteration starts from the least recently used image
+    private final LinkedHashMap<String, PImage> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param budgetBytes how many bytes of decoded pixels to keep before evicting
+     */
+    public AssetCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return the cache shared by everything the game draws
+     */
+    public static AssetCache shared() {
+        return shared;
+    }
+
+    /**
+     * Returns an image at its original size, decoding it on first use.
+     *
+     * @param app the sketch used to decode the image
+     * @param path path of the image file
+     * @return the image, or null if it could not be loaded
+     */
+    public PImage getImage(PApplet app, String path) {
+        return getImage(app, path, 0, 0);
+    }
+
+    /**
+     * Returns an image scaled to the given size, decoding and scaling it on first use so it can be drawn
+     * every frame without resizing. A width or height of 0 keeps the image's aspect ratio, as PImage.resize does;
+     * both 0 means the original size.
+     *
+     * @param app the sketch used to decode the image
+     * @param path path of the image file
+     * @param width width to scale to
+     * @param height height to scale to
+     * @return the image, or null if it could not be loaded
+     */
+    public synchronized PImage getImage(PApplet app, String path, int width, int height) {
+        String key = path + "@" + width + "x" + height;
+        PImage image = images.get(key);
+        if (image != null) {
+            hits++;
+            return image;
+        }
+        misses++;
+
+        if (width == 0 && height == 0) {
+            image = app.loadImage(path);
+        } else {
+            PImage original = getImage(app, path, 0, 0);
+            if (original == null) {
+                return null;
+            }
+            image = original.copy();
+            image.resize(width, height);
+        }
+        if (image == null) {
+            return null;
+        }
+        images.put(key, image);
+        usedBytes += sizeOf(image);
+        evict(key);
+        return image;
+    }
+
+    /**
+     * Drops least recently used images until the cache is back under budget, always keeping the one just added.
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, PImage>> iterator = images.entrySet().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<String, PImage> entry = iterator.next();
+            if (!entry.getKey().equals(keep)) {
+                usedBytes -= sizeOf(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long sizeOf(PImage image) {
+        return (long) image.width * image.height * 4;
+    }
+
+    /**
+     * Removes every image from the cache.
+     */
+    public synchronized void clear() {
+        images.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * @return fraction of lookups that were served without decoding, from 0 to 1
+     */
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return bytes of decoded pixels currently held
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+}
@@ -0,0 +1,331 @@
+package Tanks;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays the turns of computer-controlled tanks.
+ * When such a tank's turn starts and no shells or explosions are still changing the field, the terrain and tanks
+ * are copied and every combination of driving distance, turret angle and power the tank can reach is searched
+ * on a shared ForkJoinPool. Each candidate is flown through the copy exactly as ProjectileSystem would fly it,
+ * and scored by the damage the explosion deals, using Explosion's falloff, less the damage it does to the
+ * shooter. Each turn tries at most a set number of candidates, spread evenly over all of them, so the same
+ * field always gets the same shot however busy the machine is. The best shot found is played out as actions.
+ * In the game the search never blocks the caller: act() returns no actions until the plan is ready.
+ */
+public class ComputerPlayer implements Player {
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final int MOVE_STEP = 5; // Ticks of driving between candidate positions, 10 pixels
+    private static final int MAX_MOVE_TICKS = 50; // Drive at most 100 pixels
+    private static final int MAX_FLIGHT = 10 * Simulation.TICK_RATE; // Ticks a candidate shell is followed
+    private static final float SELF_RISK = 1.5f; // Weight of damage to the shooter against damage dealt
+    private static final float KILL_BONUS = 20;
+    private static final float MOVE_COST = 0.001f; // Per tick driven, so a shot from where it stands wins ties
+
+    private final Set<Character> players;
+    private final int maxCandidates;
+    private final boolean waitForPlan;
+
+    private Tank planningFor;
+    private ForkJoinTask<ShotPlan> thinking;
+    private ShotPlan plan;
+
+    /**
+     * @param players identifiers of the tanks this player controls
+     * @param maxCandidates how many shots each turn's search may try, or 0 to try every one
+     * @param waitForPlan whether act() waits for the search, as headless matches do, instead of returning
+     *                    no actions until it is done
+     */
+    public ComputerPlayer(Set<Character> players, int maxCandidates, boolean waitForPlan) {
+        this.players = players;
+        this.maxCandidates = maxCandidates;
+        this.waitForPlan = waitForPlan;
+    }
+
+    /**
+     * @param config the configuration naming the computer players and how many shots they try
+     */
+    public ComputerPlayer(GameConfig config) {
+        this(config.getComputerPlayers(), config.getComputerCandidates(), false);
+    }
+
+    /**
+     * Chooses this tick's actions if the current tank is computer-controlled.
+     *
+     * @param simulation the match being played
+     * @param actions the actions for this tick, added to
+     * @return true if it is a computer tank's turn, in which case player input should be ignored
+     */
+    @Override
+    public boolean act(Simulation simulation, EnumSet<Action> actions) {
+        Tank tank = simulation.getCurrentTank();
+        if (simulation.isGameOver() || tank == null || !players.contains(tank.getIdentifier())) {
+            reset(null);
+            return false;
+        }
+        if (tank != planningFor) {
+            reset(tank);
+        }
+
+        if (plan == null && thinking == null) {
+            if (simulation.getProjectiles().size() > 0 || !simulation.getExplosions().isEmpty()) {
+                return true; // Let the last shot finish changing the terrain first
+            }
+            thinking = POOL.submit(Search.of(simulation, tank, maxCandidates)); // Copies the field on this thread
+        }
+        if (thinking != null) {
+            if (!waitForPlan && !thinking.isDone()) {
+                return true;
+            }
+            plan = thinking.join();
+            thinking = null;
+        }
+
+        plan.nextActions(tank, simulation.getTerrain(), actions);
+        if (actions.contains(Action.FIRE)) {
+            reset(null);
+        }
+        return true;
+    }
+
+    private void reset(Tank tank) {
+        if (thinking != null) {
+            thinking.cancel(false);
+        }
+        planningFor = tank;
+        thinking = null;
+        plan = null;
+    }
+
+    /**
+     * Searches for the best shot for a tank, waiting for the result.
+     *
+     * @param simulation the match being played
+     * @param tank the tank to plan for
+     * @param maxCandidates how many shots the search may try, or 0 to try every one
+     * @return the best shot found
+     */
+    public static ShotPlan plan(Simulation simulation, Tank tank, int maxCandidates) {
+        return POOL.invoke(Search.of(simulation, tank, maxCandidates));
+    }
+
+    /**
+     * Everything the search needs, copied so it can run while the game carries on.
+     * Candidates are numbered move-major, then angle, then power, and only every stride-th one is tried.
+     */
+    private static class Situation {
+        final Terrain terrain;
+        final float[] tankX, tankY;
+        final int[] health;
+        final boolean[] shielded;
+        final int self;
+        final float windForce;
+        final float[] moveX; // Where the shooter ends up for each candidate move
+        final int[] moveTicks;
+        final float[] turretAngles;
+        final int powers;
+        final int stride;
+
+        Situation(Simulation simulation, Tank shooter, int maxCandidates) {
+            terrain = simulation.getTerrain().copy();
+            windForce = simulation.getWind().getWindForce();
+
+            int count = simulation.getTanks().size();
+            tankX = new float[count];
+            tankY = new float[count];
+            health = new int[count];
+            shielded = new boolean[count];
+            int selfIndex = 0;
+            for (int i = 0; i < count; i++) {
+                Tank tank = simulation.getTanks().get(i);
+                tankX[i] = tank.getX();
+                tankY[i] = tank.getY();
+                health[i] = tank.getHealth();
+                shielded[i] = tank.isShieldActive();
+                if (tank == shooter) {
+                    selfIndex = i;
+                }
+            }
+            self = selfIndex;
+
+            // Drive in steps the way Tank.moveLeft and moveRight do, stopping where they would refuse to move
+            int maxSteps = MAX_MOVE_TICKS / MOVE_STEP;
+            float[] xs = new float[2 * maxSteps + 1];
+            int[] ticks = new int[xs.length];
+            xs[0] = shooter.getX();
+            int moves = 1;
+            for (int direction = -1; direction <= 1; direction += 2) {
+                float x = shooter.getX();
+                int fuel = shooter.getFuel();
+                for (int tick = 1; tick <= MAX_MOVE_TICKS; tick++) {
+                    float distance = 60f / Simulation.TICK_RATE;
+                    boolean inBounds = direction < 0 ? x - distance >= 0 : x + distance + 30 <= terrain.getWidth();
+                    if (fuel <= 0 || !inBounds) {
+                        break;
+                    }
+                    x += direction * distance;
+                    fuel -= distance;
+                    if (tick % MOVE_STEP == 0) {
+                        xs[moves] = x;
+                        ticks[moves++] = direction * tick;
+                    }
+                }
+            }
+            moveX = Arrays.copyOf(xs, moves);
+            moveTicks = Arrays.copyOf(ticks, moves);
+
+            // Every angle the turret reaches one tick at a time from where it points now
+            float[] angles = new float[64];
+            int angleCount = 0;
+            angles[angleCount++] = shooter.getTurretAngle();
+            for (float angle = shooter.getTurretAngle(); Tank.turnedLeft(angle) != angle; ) {
+                angle = Tank.turnedLeft(angle);
+                angles[angleCount++] = angle;
+            }
+            for (float angle = shooter.getTurretAngle(); Tank.turnedRight(angle) != angle; ) {
+                angle = Tank.turnedRight(angle);
+                angles[angleCount++] = angle;
+            }
+            turretAngles = Arrays.copyOf(angles, angleCount);
+            powers = Math.min(100, shooter.getHealth()) + 1;
+            int candidates = moveX.length * turretAngles.length * powers;
+            stride = maxCandidates > 0 ? Math.max(1, (candidates + maxCandidates - 1) / maxCandidates) : 1;
+        }
+
+        /**
+         * @return how many candidates are tried, numbered 0 up to this and found with candidate()
+         */
+        int samples() {
+            return (moveX.length * turretAngles.length * powers + stride - 1) / stride;
+        }
+
+        int candidate(int sample) {
+            return sample * stride;
+        }
+
+        ShotPlan plan(int candidate, float score) {
+            int power = candidate % powers;
+            int angle = candidate / powers % turretAngles.length;
+            int move = candidate / (powers * turretAngles.length);
+            return new ShotPlan(moveTicks[move], turretAngles[angle], power, score);
+        }
+
+        /**
+         * Flies one candidate shot and scores where it lands.
+         */
+        float score(int candidate) {
+            int power = candidate % powers;
+            int angle = candidate / powers % turretAngles.length;
+            int move = candidate / (powers * turretAngles.length);
+            float fromX = moveX[move], fromY = terrain.getHeightAtX(fromX);
+
+            float firingAngle = Tank.firingAngle(turretAngles[angle]);
+            float x = fromX, y = fromY;
+            float vx = ProjectileSystem.launchVelocityX(firingAngle, power);
+            float vy = ProjectileSystem.launchVelocityY(firingAngle, power);
+            float windAcceleration = ProjectileSystem.windAcceleration(windForce);
+            boolean armed = false;
+            for (int tick = 0; tick < MAX_FLIGHT; tick++) {
+                float x0 = x, y0 = y;
+                vx += windAcceleration;
+                x += vx;
+                y += vy;
+                vy += ProjectileSystem.GRAVITY;
+
+                boolean wasArmed = armed;
+                armed = armed || Tank.hitTime(fromX, fromY, x, y, x, y) < 0;
+                float hit = armed || y > y0 ? terrain.firstContact(x0, y0, x, y) : -1;
+                float minX = Math.min(x0, x) - Tank.HALF_WIDTH, maxX = Math.max(x0, x) + Tank.HALF_WIDTH;
+                for (int i = 0; i < tankX.length; i++) {
+                    float tx = i == self ? fromX : tankX[i], ty = i == self ? fromY : tankY[i];
+                    if (health[i] <= 0 || tx < minX || tx > maxX || (i == self && !wasArmed)) {
+                        continue;
+                    }
+                    float t = Tank.hitTime(tx, ty, x0, y0, x, y);
+                    if (t >= 0 && (hit < 0 || t < hit)) {
+                        hit = t;
+                    }
+                }
+                if (hit >= 0) {
+                    return scoreExplosion(x0 + (x - x0) * hit, y0 + (y - y0) * hit, fromX, fromY) - MOVE_COST * Math.abs(moveTicks[move]);
+                }
+                if (y >= terrain.getWorldHeight() || y <= 0 || x < 0 || x > terrain.getWorldWidth()) {
+                    break;
+                }
+            }
+            return -2; // Lost off the edge of the world
+        }
+
+        private float scoreExplosion(float x, float y, float fromX, float fromY) {
+            float dealt = 0, nearest = Float.MAX_VALUE;
+            for (int i = 0; i < tankX.length; i++) {
+                if (health[i] <= 0) {
+                    continue;
+                }
+                float distance = i == self ? (float) Math.hypot(x - fromX, y - fromY) : (float) Math.hypot(x - tankX[i], y - tankY[i]);
+                int damage = shielded[i] ? 0 : Explosion.damageAt(distance);
+                if (i == self) {
+                    dealt -= SELF_RISK * damage;
+                } else {
+                    dealt += Math.min(damage, health[i]);
+                    if (damage >= health[i]) {
+                        dealt += KILL_BONUS;
+                    }
+                    nearest = Math.min(nearest, distance);
+                }
+            }
+            // A miss is scored by how close it came, always less than a single point of damage
+            return nearest == Float.MAX_VALUE ? dealt : dealt - Math.min(1, nearest / terrain.getWorldWidth());
+        }
+    }
+
+    /**
+     * Scores a range of candidates, splitting it across the pool until the pieces are small.
+     */
+    private static class Search extends RecursiveTask<ShotPlan> {
+        private static final long serialVersionUID = 1L;
+        private static final int LEAF_SIZE = 256;
+
+        private final Situation situation;
+        private final int first, last; // Range of samples, last exclusive
+
+        private Search(Situation situation, int first, int last) {
+            this.situation = situation;
+            this.first = first;
+            this.last = last;
+        }
+
+        static Search of(Simulation simulation, Tank tank, int maxCandidates) {
+            Situation situation = new Situation(simulation, tank, maxCandidates);
+            return new Search(situation, 0, situation.samples());
+        }
+
+        @Override
+        protected ShotPlan compute() {
+            if (last - first <= LEAF_SIZE) {
+                int best = situation.candidate(first);
+                float bestScore = -Float.MAX_VALUE;
+                for (int sample = first; sample < last; sample++) {
+                    int candidate = situation.candidate(sample);
+                    float score = situation.score(candidate);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = candidate;
+                    }
+                }
+                return situation.plan(best, bestScore);
+            }
+            int middle = (first + last) >>> 1;
+            Search left = new Search(situation, first, middle);
+            Search right = new Search(situation, middle, last);
+            right.fork();
+            ShotPlan leftPlan = left.compute();
+            ShotPlan rightPlan = right.join();
+            return rightPlan.getScore() > leftPlan.getScore() ? rightPlan : leftPlan;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package Tanks;
+
+/**
+ * Precomputed landing points for every shot a tank can make from one position, so targeting questions are
+ * answered by lookup and interpolation instead of by flying shells.
+ * The table covers turret angle, power and wind on a grid, each entry traced with TrajectoryPreview so it lands
+ * exactly where a real shell would. It listens to the terrain: when the surface changes, only the entries whose
+ * arcs pass over the changed columns are marked stale, and they are traced again the next time they are read.
+ * A table belongs to one firing position; build a new one when the tank moves.
+ */
+public class FiringTable {
+    private static final float MIN_ANGLE = -90, ANGLE_STEP = 2;
+    private static final int ANGLES = 91; // -90 to 90 degrees
+    private static final int POWER_STEP = 5;
+    private static final int POWERS = 21; // 0 to 100
+    private static final float MIN_WIND = -35, WIND_STEP = 5;
+    private static final int WINDS = 15; // -35 to 35, the range Wind keeps to
+
+    private final Terrain terrain;
+    private final float originX, originY;
+    private final TrajectoryPreview tracer = new TrajectoryPreview();
+    private final TerrainListener listener = this::terrainChanged;
+
+    // One entry per (wind, angle, power), wind-major so each wind's entries are contiguous
+    private final float[] landingX = new float[WINDS * ANGLES * POWERS]; // NaN where the shell leaves the world
+    private final float[] minX = new float[landingX.length], maxX = new float[landingX.length];
+    private final boolean[] stale = new boolean[landingX.length];
+    private int rebuilt = 0;
+
+    /**
+     * A turret angle and power that land a shot at a requested x-coordinate.
+     */
+    public static class Solution {
+        private final float angle, power;
+
+        Solution(float angle, float power) {
+            this.angle = angle;
+            this.power = power;
+        }
+
+        /**
+         * @return turret angle in degrees, 0 being straight up and positive to the right
+         */
+        public float getAngle() {
+            return angle;
+        }
+
+        public float getPower() {
+            return power;
+        }
+    }
+
+    /**
+     * Traces every entry of the table and starts listening for terrain changes.
+     *
+     * @param terrain the terrain shots land on
+     * @param originX x-coordinate shots are fired from
+     * @param originY y-coordinate shots are fired from
+     */
+    public FiringTable(Terrain terrain, float originX, float originY) {
+        this.terrain = terrain;
+        this.originX = originX;
+        this.originY = originY;
+        for (int i = 0; i < landingX.length; i++) {
+            trace(i);
+        }
+        terrain.addListener(listener);
+    }
+
+    /**
+     * Stops listening to the terrain. The table must not be used afterwards.
+     */
+    public void dispose() {
+        terrain.removeListener(listener);
+    }
+
+    private static int index(int wind, int angle, int power) {
+        return (wind * ANGLES + angle) * POWERS + power;
+    }
+
+    private void trace(int i) {
+        int power = i % POWERS;
+        int angle = i / POWERS % ANGLES;
+        int wind = i / (POWERS * ANGLES);
+        tracer.trace(terrain, originX, originY, MIN_ANGLE + angle * ANGLE_STEP, power * POWER_STEP, MIN_WIND + wind * WIND_STEP);
+        landingX[i] = tracer.isLanded() ? tracer.getEndX() : Float.NaN;
+        minX[i] = tracer.getMinX();
+        maxX[i] = tracer.getMaxX();
+        stale[i] = false;
+    }
+
+    /**
+     * Marks the entries whose arcs pass over the changed columns. Arcs elsewhere cannot have changed.
+     */
+    private void terrainChanged(int firstColumn, int lastColumn) {
+        for (int i = 0; i < landingX.length; i++) {
+            if (maxX[i] >= firstColumn && minX[i] < lastColumn + 1) {
+                stale[i] = true;
+            }
+        }
+    }
+
+    private float entry(int wind, int angle, int power) {
+        int i = index(wind, angle, power);
+        if (stale[i]) {
+            trace(i);
+            rebuilt++;
+        }
+        return landingX[i];
+    }
+
+    /**
+     * @return how many entries have been traced again after terrain changes
+     */
+    public int getRebuiltCount() {
+        return rebuilt;
+    }
+
+    /**
+     * Landing point of one grid power under any wind, interpolated between the two nearest wind rows.
+     */
+    private float landingAt(float windPosition, int angle, int power) {
+        int wind = Math.min((int) windPosition, WINDS - 2);
+        float fraction = windPosition - wind;
+        float low = entry(wind, angle, power);
+        return fraction == 0 ? low : low + (entry(wind + 1, angle, power) - low) * fraction;
+    }
+
+    private static float position(float value, float min, float step, int count) {
+        return Math.max(0, Math.min(count - 1, (value - min) / step));
+    }
+
+    /**
+     * Looks up where a shot lands, interpolating between the nearest table entries.
+     *
+     * @param angle turret angle in degrees, 0 being straight up and positive to the right
+     * @param power shot power, from 0 to 100
+     * @param windForce the wind force
+     * @return the landing x-coordinate, or NaN if the shot leaves the world
+     */
+    public float getLandingX(float angle, float power, float windForce) {
+        float windPosition = position(windForce, MIN_WIND, WIND_STEP, WINDS);
+        float anglePosition = position(angle, MIN_ANGLE, ANGLE_STEP, ANGLES);
+        float powerPosition = position(power, 0, POWER_STEP, POWERS);
+        int a = Math.min((int) anglePosition, ANGLES - 2), p = Math.min((int) powerPosition, POWERS - 2);
+        float angleFraction = anglePosition - a, powerFraction = powerPosition - p;
+
+        float low = lerp(landingAt(windPosition, a, p), landingAt(windPosition, a, p + 1), powerFraction);
+        float high = lerp(landingAt(windPosition, a + 1, p), landingAt(windPosition, a + 1, p + 1), powerFraction);
+        return lerp(low, high, angleFraction);
+    }
+
+    private static float lerp(float from, float to, float fraction) {
+        return fraction == 0 ? from : from + (to - from) * fraction;
+    }
+
+    /**
+     * Finds the gentlest shot that lands on a target: for each table angle, the power at which the landing point
+     * crosses the target is interpolated between neighbouring entries, and the lowest such power wins.
+     *
+     * @param targetX x-coordinate to land on
+     * @param windForce the wind force
+     * @param maxPower the most power the tank can use
+     * @return the angle and power, or null if no shot in the table reaches the target
+     */
+    public Solution solve(float targetX, float windForce, float maxPower) {
+        float windPosition = position(windForce, MIN_WIND, WIND_STEP, WINDS);
+        int powers = Math.min(POWERS, (int) (maxPower / POWER_STEP) + 1);
+        float bestAngle = 0, bestPower = Float.MAX_VALUE;
+        for (int a = 0; a < ANGLES; a++) {
+            float previous = landingAt(windPosition, a, 0);
+            for (int p = 1; p < powers && p * POWER_STEP < bestPower + POWER_STEP; p++) {
+                float current = landingAt(windPosition, a, p);
+                if (previous != current && (previous - targetX) * (current - targetX) <= 0) { // False for NaN
+                    float power = (p - 1 + (targetX - previous) / (current - previous)) * POWER_STEP;
+                    if (power < bestPower) {
+                        bestPower = power;
+                        bestAngle = MIN_ANGLE + a * ANGLE_STEP;
+                    }
+                    break;
+                }
+                previous = current;
+            }
+        }
+        return bestPower == Float.MAX_VALUE ? null : new Solution(bestAngle, bestPower);
+    }
+}
@@ -0,0 +1,351 @@
+package Tanks;
+
+import processing.core.PApplet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times each phase of a frame, both the simulation ticks and the drawing, into a histogram per phase.
+ * Phases are timed with begin and end calls on the thread running the game; they may nest, and an outer
+ * phase's time includes the phases inside it. Every interval a background thread takes the histograms' counts,
+ * and appends each phase's p50, p99 and max to a CSV file if a directory was given. Any frame much slower than
+ * the frame rate allows is written to a second CSV file, one row per hitch with every phase's time in it, so a
+ * stall can be pinned on one phase straight away.
+ * Recording is a few atomic adds with no locks and no allocation, so the profiler can stay on in normal play.
+ */
+public class FrameProfiler implements AutoCloseable {
+
+    /**
+     * The timed phases. Simulation phases run inside SIMULATION, and drawing phases inside FRAME after it.
+     */
+    public enum Phase {
+        FRAME, SIMULATION, ACTIONS, TANK_SETTLE, PROJECTILES, EXPLOSIONS, TREE_SETTLE, CLEANUP,
+        BACKGROUND, TERRAIN, HUD, TREES, PREVIEW, TANKS, SHELLS, EXPLOSION_DRAW
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    /**
+     * A profiler that records nothing, for simulations nobody is profiling.
+     */
+    static final FrameProfiler DISABLED = new FrameProfiler(0);
+
+    private final boolean enabled;
+    private final long hitchNanos;
+    private final Histogram[] histograms = new Histogram[PHASES.length];
+    private final long[] started = new long[PHASES.length]; // Only touched on the game's thread
+    private final long[] frameNanos = new long[PHASES.length]; // Each phase's time so far in the current frame
+    private final ConcurrentLinkedQueue<long[]> hitches = new ConcurrentLinkedQueue<>();
+    private volatile boolean visible = false;
+    private ScheduledExecutorService writer;
+    private Path summaryFile, hitchFile;
+
+    /**
+     * @param frameRate the frame rate the game aims for; frames taking over three frames' time count as hitches
+     */
+    public FrameProfiler(int frameRate) {
+        enabled = frameRate > 0;
+        hitchNanos = enabled ? 3_000_000_000L / frameRate : Long.MAX_VALUE;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Starts taking the histograms every interval on a background thread, and writing them to CSV files.
+     *
+     * @param directory where to write the CSV files, or null to only keep the overlay up to date
+     * @param intervalSeconds how often to take the histograms
+     */
+    public void start(String directory, int intervalSeconds) {
+        if (directory != null) {
+            String stamp = Long.toString(System.currentTimeMillis());
+            try {
+                Files.createDirectories(Path.of(directory));
+                summaryFile = Path.of(directory, "frames-" + stamp + ".csv");
+                hitchFile = Path.of(directory, "hitches-" + stamp + ".csv");
+                StringBuilder hitchHeader = new StringBuilder("time_ms");
+                for (Phase phase : PHASES) {
+                    hitchHeader.append(',').append(phase.name().toLowerCase()).append("_us");
+                }
+                Files.write(summaryFile, "time_ms,phase,count,mean_us,p50_us,p99_us,max_us\n".getBytes(StandardCharsets.UTF_8));
+                Files.write(hitchFile, (hitchHeader + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create profile files in " + directory, e);
+            }
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "frame-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleAtFixedRate(this::flush, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void begin(Phase phase) {
+        if (enabled) {
+            started[phase.ordinal()] = System.nanoTime();
+        }
+    }
+
+    public void end(Phase phase) {
+        if (enabled) {
+            long nanos = System.nanoTime() - started[phase.ordinal()];
+            histograms[phase.ordinal()].record(nanos);
+            frameNanos[phase.ordinal()] += nanos;
+        }
+    }
+
+    /**
+     * Ends the FRAME phase and the frame, keeping the frame's phase times if it was a hitch.
+     */
+    public void endFrame() {
+        end(Phase.FRAME);
+        if (enabled) {
+            if (frameNanos[Phase.FRAME.ordinal()] > hitchNanos && hitchFile != null) {
+                hitches.add(frameNanos.clone());
+            }
+            Arrays.fill(frameNanos, 0);
+        }
+    }
+
+    /**
+     * @return the histogram of a phase's times since the last interval was taken
+     */
+    public Histogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public void toggleVisible() {
+        visible = !visible;
+    }
+
+    /**
+     * Draws each phase's times since the last interval in the top right corner.
+     */
+    public void display(PApplet app) {
+        if (!visible) {
+            return;
+        }
+        float x = app.width - 300, y = 40, lineHeight = 14;
+        app.noStroke();
+        app.fill(0, 170);
+        app.rect(x - 8, y - 4, 300, (PHASES.length + 1) * lineHeight + 8);
+        app.fill(255);
+        app.textSize(11);
+        app.textAlign(PApplet.LEFT, PApplet.TOP);
+        app.text("phase            p50     p99     max (ms)", x, y);
+        for (Phase phase : PHASES) {
+            y += lineHeight;
+            Histogram histogram = histograms[phase.ordinal()];
+            app.text(String.format("%-14s %7.2f %7.2f %7.2f", phase.name().toLowerCase(),
+                    histogram.getPercentileNanos(0.5) / 1e6, histogram.getPercentileNanos(0.99) / 1e6,
+                    histogram.getMaxNanos() / 1e6), x, y);
+        }
+    }
+
+    /**
+     * Writes the interval's summary and any hitches, then starts a new interval. Runs on the background thread.
+     */
+    void flush() {
+        long now = System.currentTimeMillis();
+        StringBuilder rows = new StringBuilder();
+        for (Phase phase : PHASES) {
+            Histogram.Summary summary = histograms[phase.ordinal()].drain();
+            if (summary.getCount() > 0) {
+                rows.append(now).append(',').append(phase.name().toLowerCase()).append(',').append(summary.getCount())
+                        .append(',').append(summary.getMeanNanos() / 1000).append(',').append(summary.getP50Nanos() / 1000)
+                        .append(',').append(summary.getP99Nanos() / 1000).append(',').append(summary.getMaxNanos() / 1000)
+                        .append('\n');
+            }
+        }
+        StringBuilder hitchRows = new StringBuilder();
+        for (long[] hitch; (hitch = hitches.poll()) != null; ) {
+            hitchRows.append(now);
+            for (long nanos : hitch) {
+                hitchRows.append(',').append(nanos / 1000);
+            }
+            hitchRows.append('\n');
+        }
+        if (summaryFile != null) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(summaryFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND))) {
+                out.print(rows);
+            } catch (IOException e) {
+                System.err.println("Could not write frame profile: " + e.getMessage());
+            }
+            if (hitchRows.length() > 0) {
+                try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(hitchFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND))) {
+                    out.print(hitchRows);
+                } catch (IOException e) {
+                    System.err.println("Could not write frame hitches: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the files being written, summaries then hitches, or null if none are
+     */
+    public Path[] getFiles() {
+        return summaryFile == null ? null : new Path[]{summaryFile, hitchFile};
+    }
+
+    @Override
+    public void close() {
+        if (writer != null) {
+            // Let a flush already under way finish first, so the last one does not interleave with it
+            writer.shutdown();
+            try {
+                writer.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+            flush();
+        }
+    }
+
+    /**
+     * A histogram of durations that any number of threads can record into and read from without locking.
+     * Durations fall into eight buckets per power of two, so percentiles come out within an eighth.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKETS = 8, SUB_BITS = 3, MAX_EXPONENT = 40;
+        private static final int BUCKETS = (MAX_EXPONENT - 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong(), totalNanos = new AtomicLong(), maxNanos = new AtomicLong();
+
+        static int bucketFor(long nanos) {
+            long value = Math.min(Math.max(0, nanos), (1L << MAX_EXPONENT) - 1);
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) (value >> (exponent - SUB_BITS) & SUB_BUCKETS - 1);
+        }
+
+        /**
+         * @return the largest duration that falls in a bucket
+         */
+        static long bucketTop(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+        }
+
+        public void record(long nanos) {
+            counts.incrementAndGet(bucketFor(nanos));
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // Another thread raised it first; try again against theirs
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @param fraction the fraction of durations, e.g. 0.99
+         * @return a duration at least that fraction of those recorded took no longer than
+         */
+        public long getPercentileNanos(double fraction) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            return percentile(snapshot, total, fraction);
+        }
+
+        private static long percentile(long[] buckets, long total, double fraction) {
+            long target = (long) Math.ceil(total * fraction), seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    return bucketTop(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Takes everything recorded so far, leaving the histogram empty.
+         * Durations recorded while this runs land in either this summary or the next, never in neither.
+         */
+        public Summary drain() {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.getAndSet(i, 0);
+                total += snapshot[i];
+            }
+            count.addAndGet(-total);
+            long nanos = totalNanos.getAndSet(0);
+            return new Summary(total, total == 0 ? 0 : nanos / total, percentile(snapshot, total, 0.5),
+                    percentile(snapshot, total, 0.99), maxNanos.getAndSet(0));
+        }
+
+        /**
+         * A histogram's figures for one interval.
+         */
+        public static class Summary {
+            private final long count, meanNanos, p50Nanos, p99Nanos, maxNanos;
+
+            Summary(long count, long meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+                this.count = count;
+                this.meanNanos = meanNanos;
+                this.p50Nanos = p50Nanos;
+                this.p99Nanos = p99Nanos;
+                this.maxNanos = maxNanos;
+            }
+
+            public long getCount() {
+                return count;
+            }
+
+            public long getMeanNanos() {
+                return meanNanos;
+            }
+
+            public long getP50Nanos() {
+                return p50Nanos;
+            }
+
+            public long getP99Nanos() {
+                return p99Nanos;
+            }
+
+            public long getMaxNanos() {
+                return maxNanos;
+            }
+        }
+    }
+}
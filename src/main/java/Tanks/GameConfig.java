@@ -5,38 +5,65 @@ import processing.core.PImage;
 import processing.data.JSONArray;
 import processing.data.JSONObject;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
 public class GameConfig {
-    private PApplet app;
     private JSONObject config;
     private PImage background;
     private PImage treeImage;
+    private String backgroundPath;
+    private String treeImagePath;
     private JSONObject playerColours;
     private String layoutFilename;
     private int foregroundColour;
     private int currentLevelIndex = 0;
     private JSONArray levels;
+    private Random random = new Random();
+    private LevelPack levelPack; // Compiled levels, used instead of "levels" when the config names a "level_pack"
 
-    public GameConfig(PApplet app, String configPath) {
-        this.app = app;
-        this.config = app.loadJSONObject(configPath);
-        this.levels = config.getJSONArray("levels");
+    public GameConfig(String configPath) {
+        this.config = PApplet.loadJSONObject(new File(configPath));
+        if (config.hasKey("level_pack")) {
+            this.levelPack = LevelPack.open(new File(config.getString("level_pack")).toPath());
+        }
+        this.levels = config.hasKey("levels") ? config.getJSONArray("levels") : new JSONArray();
         this.playerColours = config.getJSONObject("player_colours");
         loadLevel(currentLevelIndex);
     }
     
 
     public void loadNextLevel() {
-        currentLevelIndex = (currentLevelIndex + 1) % levels.size(); // Loop back to the first level if it's the last
+        currentLevelIndex = (currentLevelIndex + 1) % getLevelCount(); // Loop back to the first level if it's the last
         loadLevel(currentLevelIndex);
     }
 
+    /**
+     * Makes a level current again, as when a snapshot taken on it is restored.
+     * @param levelIndex the level to go to
+     */
+    void setCurrentLevelIndex(int levelIndex) {
+        if (levelIndex != currentLevelIndex) {
+            loadLevel(levelIndex);
+        }
+    }
+
     /**
      * Checks if there is another level after the current one.
      *
      * @return true if there is at least one more level after the current level, false otherwise.
      */
     public boolean hasNextLevel() {
-        return currentLevelIndex + 1 < levels.size();
+        return currentLevelIndex + 1 < getLevelCount();
     }
 
     /**
@@ -49,26 +76,146 @@ public class GameConfig {
     
     
     /**
-     * Reads through the json file to read the background and tree image, and the colour of the terrain.
+     * Reads through the json file to read the background and tree image paths, and the colour of the terrain.
+     * The images themselves are only fetched from the AssetCache when a renderer asks for them, so headless games
+     * never load them and revisiting a level does not decode them again.
      * @param levelIndex the level we are currently at
      */
     private void loadLevel(int levelIndex) {
-        if (levelIndex >= levels.size()) {
+        if (levelIndex >= getLevelCount()) {
             levelIndex = 0;  // Reset to first level if index is out of range
         }
         currentLevelIndex = levelIndex;
     
+        this.backgroundPath = getBackgroundPath(levelIndex);
+        this.background = null;
+        this.layoutFilename = getLayoutFilename(levelIndex);
+        this.treeImagePath = getTreeImagePath(levelIndex);
+        this.treeImage = null;
+        this.foregroundColour = getForegroundColour(levelIndex);
+    }
+
+    /**
+     * Decodes a level's background and tree images into the shared AssetCache ahead of time, so switching to
+     * that level does not stall the frame it happens on. Safe to call from a background thread.
+     *
+     * @param app the sketch used to decode the images
+     * @param levelIndex the level to preload
+     * @param width width the background is drawn at
+     * @param height height the background is drawn at
+     */
+    public void preloadImages(PApplet app, int levelIndex, int width, int height) {
+        AssetCache.shared().getImage(app, getBackgroundPath(levelIndex), width, height);
+        String treePath = getTreeImagePath(levelIndex);
+        if (treePath != null) {
+            loadTreeImage(app, treePath);
+        }
+    }
+
+    /**
+     * @return the tree image scaled down to a tenth of its size, the size trees are drawn at
+     */
+    private static PImage loadTreeImage(PApplet app, String path) {
+        PImage original = AssetCache.shared().getImage(app, path);
+        return AssetCache.shared().getImage(app, path, original.width / 10, original.height / 10);
+    }
+
+    /**
+     * @return number of levels in the configuration
+     */
+    public int getLevelCount() {
+        return levelPack != null ? levelPack.getLevelCount() : levels.size();
+    }
+
+    /**
+     * @return the compiled level pack levels are loaded from, or null if they come from layout files
+     */
+    public LevelPack getLevelPack() {
+        return levelPack;
+    }
+
+    /**
+     * @return index of the level currently being played
+     */
+    public int getCurrentLevelIndex() {
+        return currentLevelIndex;
+    }
+
+    /**
+     * @param levelIndex the level to look up
+     * @return path of the layout file for that level, or null if levels come from a level pack
+     */
+    public String getLayoutFilename(int levelIndex) {
+        if (levelPack != null) {
+            return null;
+        }
+        return levels.getJSONObject(levelIndex).getString("layout");
+    }
+
+    /**
+     * @param levelIndex the level to look up
+     * @return path of the background image for that level
+     */
+    public String getBackgroundPath(int levelIndex) {
+        if (levelPack != null) {
+            return levelPack.getBackgroundPath(levelIndex);
+        }
+        return levels.getJSONObject(levelIndex).getString("background");
+    }
+
+    /**
+     * @param levelIndex the level to look up
+     * @return path of the tree image for that level, or null if it has none
+     */
+    public String getTreeImagePath(int levelIndex) {
+        if (levelPack != null) {
+            return levelPack.getTreeImagePath(levelIndex);
+        }
         JSONObject level = levels.getJSONObject(levelIndex);
-        this.background = app.loadImage(level.getString("background"));
-        this.layoutFilename = level.getString("layout");
-    
-        if (level.hasKey("trees")) {
-            this.treeImage = app.loadImage(level.getString("trees"));
-        } else {
-            this.treeImage = null;
+        return level.hasKey("trees") ? level.getString("trees") : null;
+    }
+
+    /**
+     * Reads how tall a level's trees are drawn from the header of its tree image, without decoding it, so the
+     * headless simulation can tell when a tree has sunk off the bottom of the world.
+     *
+     * @param levelIndex the level to look up
+     * @return height of the level's trees in pixels, or 0 if it has no tree image or the image cannot be read
+     */
+    public int getTreeHeight(int levelIndex) {
+        String path = getTreeImagePath(levelIndex);
+        if (path == null) {
+            return 0;
+        }
+        // Found on the classpath or as a file, as the sketch finds it
+        InputStream resource = GameConfig.class.getClassLoader().getResourceAsStream(path);
+        try (InputStream stream = resource != null ? resource : new FileInputStream(path);
+             ImageInputStream image = ImageIO.createImageInputStream(stream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(image);
+            if (!readers.hasNext()) {
+                return 0;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(image);
+                return reader.getHeight(0) / 10; // Scaled as loadTreeImage scales it
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return 0;
         }
-    
-        this.foregroundColour = parseColourString(level.getString("foreground-colour"));
+    }
+
+    /**
+     * @param levelIndex the level to look up
+     * @return terrain colour for that level
+     */
+    public int getForegroundColour(int levelIndex) {
+        if (levelPack != null) {
+            return levelPack.getForegroundColour(levelIndex);
+        }
+        return parseColourString(levels.getJSONObject(levelIndex).getString("foreground-colour"));
     }
     
     /**
@@ -78,12 +225,31 @@ public class GameConfig {
      */
     private int parseColourString(String ColourString) {
         String[] ColourValues = ColourString.split(",");
-        return app.color(Integer.parseInt(ColourValues[0].trim()),
-                         Integer.parseInt(ColourValues[1].trim()),
-                         Integer.parseInt(ColourValues[2].trim()));
+        return rgb(Integer.parseInt(ColourValues[0].trim()),
+                   Integer.parseInt(ColourValues[1].trim()),
+                   Integer.parseInt(ColourValues[2].trim()));
     }
 
-    public PImage getBackground() {
+    /**
+     * Packs an opaque colour the same way PApplet.color(r, g, b) does, without needing a sketch.
+     */
+    private static int rgb(int r, int g, int b) {
+        r = Math.max(0, Math.min(255, r));
+        g = Math.max(0, Math.min(255, g));
+        b = Math.max(0, Math.min(255, b));
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * @param app the sketch used to decode the image on first use
+     * @param width width the background is drawn at
+     * @param height height the background is drawn at
+     * @return the current level's background image, scaled to the given size
+     */
+    public PImage getBackground(PApplet app, int width, int height) {
+        if (background == null || background.width != width || background.height != height) {
+            background = AssetCache.shared().getImage(app, backgroundPath, width, height);
+        }
         return background;
     }
 
@@ -91,7 +257,14 @@ public class GameConfig {
         return layoutFilename;
     }
 
-    public PImage getTreeImage() {
+    /**
+     * @param app the sketch used to decode the image on first use
+     * @return the current level's tree image scaled down to tree size, or null if the level has no trees image
+     */
+    public PImage getTreeImage(PApplet app) {
+        if (treeImage == null && treeImagePath != null) {
+            treeImage = loadTreeImage(app, treeImagePath);
+        }
         return treeImage;
     }
 
@@ -107,19 +280,75 @@ public class GameConfig {
      * @return The integer color value for the specified player.
      */
     public int getPlayerColour(char playerID) {
+        return getPlayerColour(playerID, random);
+    }
+
+    /**
+     * Retrieves the player-specific color, drawing "random" colours from the given source so a seeded match
+     * always gets the same ones.
+     *
+     * @param playerID The character identifier of the player.
+     * @param random source of the colour for players configured as "random"
+     * @return The integer color value for the specified player.
+     */
+    public int getPlayerColour(char playerID, Random random) {
         String key = String.valueOf(playerID);
         if (playerColours.hasKey(key)) {
             String ColourStr = playerColours.getString(key);
             if (ColourStr.equals("random")) {
-                return app.color((int)app.random(256), (int)app.random(256), (int)app.random(256));
+                return rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256));
             } else {
                 return parseColourString(ColourStr);
             }
         }
-        return app.color(0); // Default Colour if no specific Colour is defined
+        return rgb(0, 0, 0); // Default Colour if no specific Colour is defined
+    }
+
+    /**
+     * @return identifiers of the tanks listed under "computer_players", which the computer plays
+     */
+    public Set<Character> getComputerPlayers() {
+        Set<Character> players = new HashSet<>();
+        if (config.hasKey("computer_players")) {
+            JSONArray ids = config.getJSONArray("computer_players");
+            for (int i = 0; i < ids.size(); i++) {
+                players.add(ids.getString(i).charAt(0));
+            }
+        }
+        return players;
+    }
+
+    /**
+     * @return how many shots a computer player may try each turn, from "computer_candidates"
+     */
+    public int getComputerCandidates() {
+        return config.getInt("computer_candidates", 16000);
+    }
+
+    /**
+     * @return directory every played match is recorded to as a replay, from "replay_directory", or null to
+     *         record nothing
+     */
+    public String getReplayDirectory() {
+        return config.getString("replay_directory", null);
+    }
+
+    /**
+     * @return directory frame profiles are written to as CSV files, from "profile_directory", or null to write
+     *         none
+     */
+    public String getProfileDirectory() {
+        return config.getString("profile_directory", null);
+    }
+
+    /**
+     * @return seconds each frame profile row covers, from "profile_interval_seconds", 10 if not given
+     */
+    public int getProfileIntervalSeconds() {
+        return config.getInt("profile_interval_seconds", 10);
     }
 
-    public void displayBackground(int width, int height) {
-        app.image(background, 0, 0, width, height);
+    public void displayBackground(PApplet app, int width, int height) {
+        app.image(getBackground(app, width, height), 0, 0);
     }
 }
@@ -0,0 +1,136 @@
+package Tanks;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events the game emits, so a recording lines GC pauses and CPU samples up with what the
+ * match was doing. They show up under "Tank Wars" in JDK Mission Control, or can be read with
+ * {@code jfr print --categories "Tank Wars" recording.jfr}.
+ * An event costs next to nothing unless a recording has it enabled; events are created, timed and committed
+ * where they happen, and their fields are only filled in once shouldCommit() says the event is wanted.
+ */
+final class GameEvents {
+
+    private GameEvents() {
+    }
+
+    @Name("tanks.Tick")
+    @Label("Simulation Tick")
+    @Description("One fixed-length step of a match")
+    @Category({"Tank Wars", "Simulation"})
+    @StackTrace(false)
+    static class TickEvent extends Event {
+        @Label("Tick")
+        long tick;
+
+        @Label("Tanks")
+        int tanks;
+
+        @Label("Shells")
+        int shells;
+
+        @Label("Explosions")
+        int explosions;
+
+        @Label("Actions")
+        @Description("How many player actions were applied")
+        int actions;
+    }
+
+    @Name("tanks.TurnChange")
+    @Label("Turn Change")
+    @Category({"Tank Wars", "Simulation"})
+    @StackTrace(false)
+    static class TurnChangeEvent extends Event {
+        @Label("Tick")
+        long tick;
+
+        @Label("Previous Tank")
+        char previousTank;
+
+        @Label("Next Tank")
+        char nextTank;
+
+        @Label("Tanks")
+        int tanks;
+
+        @Label("Wind")
+        int wind;
+    }
+
+    @Name("tanks.Explosion")
+    @Label("Explosion")
+    @Description("An explosion deforming the terrain and damaging the tanks in its blast")
+    @Category({"Tank Wars", "Simulation"})
+    @StackTrace(false)
+    static class ExplosionEvent extends Event {
+        @Label("X")
+        float x;
+
+        @Label("Y")
+        float y;
+
+        @Label("Radius")
+        float radius;
+
+        @Label("First Column")
+        @Description("First pixel column the crater changed, or -1 if it changed none")
+        int firstColumn;
+
+        @Label("Last Column")
+        @Description("Last pixel column the crater changed, or -1 if it changed none")
+        int lastColumn;
+
+        @Label("Tanks Hit")
+        int tanksHit;
+
+        @Label("Owner")
+        char owner;
+    }
+
+    @Name("tanks.LevelLoad")
+    @Label("Level Load")
+    @Description("Reading a level's layout or pack entry and building its terrain")
+    @Category({"Tank Wars", "Levels"})
+    @StackTrace(false)
+    static class LevelLoadEvent extends Event {
+        @Label("Level")
+        int level;
+
+        @Label("From Level Pack")
+        boolean fromPack;
+
+        @Label("Tanks")
+        int tanks;
+
+        @Label("Trees")
+        int trees;
+
+        @Label("Columns")
+        int columns;
+    }
+
+    @Name("tanks.LevelStart")
+    @Label("Level Start")
+    @Description("Swapping a loaded level in and placing its tanks and trees")
+    @Category({"Tank Wars", "Levels"})
+    @StackTrace(false)
+    static class LevelStartEvent extends Event {
+        @Label("Level")
+        int level;
+
+        @Label("Tick")
+        long tick;
+
+        @Label("Tanks")
+        int tanks;
+
+        @Label("Trees")
+        int trees;
+    }
+}
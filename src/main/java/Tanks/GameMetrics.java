@@ -0,0 +1,208 @@
+package Tanks;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters for watching a long-running game or server over JMX: tick rate and times, how many
+ * tanks, trees, shells and explosions are alive, how long levels take to load, how well the AssetCache is doing
+ * and how much each thread has allocated.
+ * Ticks and level loads are recorded as they happen with atomic adds. Entity counts are read from the watched
+ * matches when asked for, without locking them, so they may be a tick out of date.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+    static final String OBJECT_NAME = "Tanks:type=GameMetrics";
+    private static final GameMetrics shared = new GameMetrics();
+
+    private final CopyOnWriteArrayList<Simulation> matches = new CopyOnWriteArrayList<>();
+    private volatile FrameProfiler.Histogram ticks = new FrameProfiler.Histogram();
+    private final AtomicLong tickCount = new AtomicLong();
+    private final AtomicLong levelLoads = new AtomicLong(), lastLevelLoadNanos = new AtomicLong(),
+            maxLevelLoadNanos = new AtomicLong();
+    private long rateTicks, rateStartNanos = System.nanoTime(); // Guarded by this
+    private double tickRate;
+
+    /**
+     * @return the metrics for this process
+     */
+    public static GameMetrics shared() {
+        return shared;
+    }
+
+    /**
+     * Makes the metrics readable over JMX, if they are not already.
+     */
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered by an earlier game in the same process
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Counts a match's tanks, trees, shells and explosions until it is unwatched.
+     */
+    public void watch(Simulation simulation) {
+        matches.addIfAbsent(simulation);
+    }
+
+    public void unwatch(Simulation simulation) {
+        matches.remove(simulation);
+    }
+
+    public void recordTick(long nanos) {
+        ticks.record(nanos);
+        tickCount.incrementAndGet();
+    }
+
+    void recordLevelLoad(long nanos) {
+        levelLoads.incrementAndGet();
+        lastLevelLoadNanos.set(nanos);
+        long max;
+        while (nanos > (max = maxLevelLoadNanos.get()) && !maxLevelLoadNanos.compareAndSet(max, nanos)) {
+            // Another load finished first; try again against it
+        }
+    }
+
+    @Override
+    public synchronized double getTickRate() {
+        long now = System.nanoTime(), count = tickCount.get();
+        if (now - rateStartNanos >= 1_000_000_000L) {
+            tickRate = (count - rateTicks) * 1e9 / (now - rateStartNanos);
+            rateTicks = count;
+            rateStartNanos = now;
+        }
+        return tickRate;
+    }
+
+    @Override
+    public long getTickCount() {
+        return tickCount.get();
+    }
+
+    @Override
+    public double getTickP50Micros() {
+        return ticks.getPercentileNanos(0.5) / 1e3;
+    }
+
+    @Override
+    public double getTickP99Micros() {
+        return ticks.getPercentileNanos(0.99) / 1e3;
+    }
+
+    @Override
+    public double getTickMaxMicros() {
+        return ticks.getMaxNanos() / 1e3;
+    }
+
+    @Override
+    public void resetTickStats() {
+        ticks = new FrameProfiler.Histogram();
+    }
+
+    @Override
+    public int getMatches() {
+        return matches.size();
+    }
+
+    @Override
+    public int getTanks() {
+        int count = 0;
+        for (Simulation match : matches) {
+            count += match.getTanks().size();
+        }
+        return count;
+    }
+
+    @Override
+    public int getTrees() {
+        int count = 0;
+        for (Simulation match : matches) {
+            count += match.getTrees().size();
+        }
+        return count;
+    }
+
+    @Override
+    public int getProjectiles() {
+        int count = 0;
+        for (Simulation match : matches) {
+            count += match.getProjectiles().size();
+        }
+        return count;
+    }
+
+    @Override
+    public int getExplosions() {
+        int count = 0;
+        for (Simulation match : matches) {
+            count += match.getExplosions().size();
+        }
+        return count;
+    }
+
+    @Override
+    public long getLevelLoads() {
+        return levelLoads.get();
+    }
+
+    @Override
+    public double getLastLevelLoadMillis() {
+        return lastLevelLoadNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getMaxLevelLoadMillis() {
+        return maxLevelLoadNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getAssetCacheHitRatio() {
+        return AssetCache.shared().getHitRatio();
+    }
+
+    @Override
+    public long getAssetCacheBytes() {
+        return AssetCache.shared().getUsedBytes();
+    }
+
+    @Override
+    public Map<String, Long> getThreadAllocatedBytes() {
+        Map<String, Long> allocated = new TreeMap<>();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return allocated; // Not measured by this JVM
+        }
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            ThreadInfo info = threads.getThreadInfo(ids[i]);
+            if (info != null && bytes[i] >= 0) {
+                allocated.put(info.getThreadName() + " #" + ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        long total = 0;
+        for (long bytes : getThreadAllocatedBytes().values()) {
+            total += bytes;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,62 @@
+package Tanks;
+
+import java.util.Map;
+
+/**
+ * What a running game or server shows over JMX, under {@code Tanks:type=GameMetrics}.
+ * Open jconsole or any other JMX client on the same machine and pick the game's process to read these.
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * @return ticks simulated a second, across every match, measured since the rate was last read a second or
+     *         more ago
+     */
+    double getTickRate();
+
+    long getTickCount();
+
+    double getTickP50Micros();
+
+    double getTickP99Micros();
+
+    double getTickMaxMicros();
+
+    /**
+     * Starts the tick percentiles and maximum afresh.
+     */
+    void resetTickStats();
+
+    /**
+     * @return the number of matches being played
+     */
+    int getMatches();
+
+    int getTanks();
+
+    int getTrees();
+
+    int getProjectiles();
+
+    int getExplosions();
+
+    long getLevelLoads();
+
+    double getLastLevelLoadMillis();
+
+    double getMaxLevelLoadMillis();
+
+    double getAssetCacheHitRatio();
+
+    long getAssetCacheBytes();
+
+    /**
+     * @return bytes each live thread has allocated since it started, by thread name and id
+     */
+    Map<String, Long> getThreadAllocatedBytes();
+
+    /**
+     * @return bytes allocated by every live thread since it started
+     */
+    long getAllocatedBytes();
+}
@@ -1,18 +1,40 @@
 package Tanks;
 
-import processing.core.PApplet;
-
 public abstract class GameObject {
-    protected PApplet app;
     protected float x, y; // Position of the object
+    protected float previousX, previousY; // Position at the start of the current tick
     
-    public GameObject(PApplet app, float x, float y) {
-        this.app = app;
+    public GameObject(float x, float y) {
         this.x = x;
         this.y = y;
+        this.previousX = x;
+        this.previousY = y;
+    }
+
+    /**
+     * Remembers the current position as where the object was at the start of the tick.
+     * Called by the simulation before it moves anything.
+     */
+    public void savePreviousPosition() {
+        previousX = x;
+        previousY = y;
     }
 
-    public abstract void display();
+    /**
+     * @param alpha fraction of a tick elapsed since the last simulation step, from 0 to 1
+     * @return x position to draw at, blended between the previous and current tick
+     */
+    public float getDisplayX(float alpha) {
+        return previousX + (x - previousX) * alpha;
+    }
+
+    /**
+     * @param alpha fraction of a tick elapsed since the last simulation step, from 0 to 1
+     * @return y position to draw at, blended between the previous and current tick
+     */
+    public float getDisplayY(float alpha) {
+        return previousY + (y - previousY) * alpha;
+    }
 
     // Getter methods for position
     public float getX() {
@@ -0,0 +1,310 @@
+package Tanks;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One match hosted by a GameServer, with its own config, simulation and players.
+ * A room is only scheduled on the server's tick pool while something is happening in it. Once its match has
+ * settled, with nothing flying, falling or changing level and no keys held, it stops ticking until a player's
+ * input arrives, because stepping a settled match changes nothing. A server full of rooms waiting on players
+ * to take their turn therefore does almost no work.
+ * Inputs arrive from the server's network thread through a queue and are applied on the room's next tick.
+ * Players are sent a STATE line every tick; spectators instead read the room's SpectatorFeed, which every
+ * spectator shares.
+ */
+public class GameRoom {
+    private static final long TICK_NANOS = 1_000_000_000L / Simulation.TICK_RATE;
+    private static final int FEED_CAPACITY = 1 << 18; // Bytes of spectator feed kept, over a minute of a busy match
+
+    /**
+     * A player's key going down or up, or a one-off action.
+     */
+    private static class Input {
+        final GameServer.Client client;
+        final Action action;
+        final boolean down;
+
+        Input(GameServer.Client client, Action action, boolean down) {
+            this.client = client;
+            this.action = action;
+            this.down = down;
+        }
+    }
+
+    private final String name;
+    private final Simulation simulation;
+    private final ScheduledExecutorService scheduler;
+    private final CopyOnWriteArrayList<GameServer.Client> clients = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<GameServer.Client> spectators = new CopyOnWriteArrayList<>();
+    private volatile SpectatorFeed feed; // Started when the first spectator arrives
+    private final ConcurrentLinkedQueue<Input> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> ticking;
+    private volatile boolean closed = false;
+
+    // Only touched on the room's tick, which never runs on two threads at once
+    private final EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+    private final StringBuilder state = new StringBuilder();
+
+    private final TickStats stats = new TickStats();
+
+    /**
+     * @param name the room's name
+     * @param configPath the config file to play
+     * @param scheduler the pool rooms tick on
+     */
+    public GameRoom(String name, String configPath, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.simulation = new Simulation(new GameConfig(configPath), App.WIDTH, App.HEIGHT, new Random().nextLong());
+        this.scheduler = scheduler;
+        GameMetrics.shared().watch(simulation);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    public TickStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return true while the room is scheduled to tick
+     */
+    public boolean isTicking() {
+        return scheduled.get();
+    }
+
+    void join(GameServer.Client client) {
+        clients.add(client);
+        client.send("JOINED " + name + " " + simulation.getSeed());
+        wake(); // Sends the newcomer the state on the next tick
+    }
+
+    /**
+     * Adds a spectator, who is sent the feed from its latest keyframe without the room needing to tick.
+     */
+    void watch(GameServer.Client client) {
+        synchronized (this) { // Not while a tick is stepping the match
+            if (feed == null) {
+                feed = new SpectatorFeed(simulation, FEED_CAPACITY);
+            }
+        }
+        client.subscriber = feed.subscribe();
+        spectators.add(client);
+        client.send("WATCHING " + name);
+    }
+
+    /**
+     * @return true if that was the last client, in which case the room closes
+     */
+    boolean leave(GameServer.Client client) {
+        spectators.remove(client);
+        clients.remove(client);
+        inbox.add(new Input(client, null, false)); // Lets go of the client's keys
+        if (clients.isEmpty() && spectators.isEmpty()) {
+            close();
+            return true;
+        }
+        wake();
+        return false;
+    }
+
+    /**
+     * Queues a player's input for the next tick.
+     *
+     * @param client the player
+     * @param action the action
+     * @param down true for a key going down or a one-off action, false for a key coming up
+     */
+    void input(GameServer.Client client, Action action, boolean down) {
+        inbox.add(new Input(client, action, down));
+        wake();
+    }
+
+    /**
+     * Starts ticking if the room is not already.
+     */
+    private void wake() {
+        if (!closed && scheduled.compareAndSet(false, true)) {
+            ticking = scheduler.scheduleAtFixedRate(this::tick, 0, TICK_NANOS, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void close() {
+        closed = true;
+        GameMetrics.shared().unwatch(simulation);
+        ScheduledFuture<?> future = ticking;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        boolean anyHeld = false;
+        boolean fed = false;
+        synchronized (this) {
+            for (Input input; (input = inbox.poll()) != null; ) {
+                if (input.action == null) {
+                    input.client.held.clear();
+                } else if (input.down) {
+                    input.client.pressed.add(input.action);
+                    if (input.action.isContinuous()) {
+                        input.client.held.add(input.action);
+                    }
+                } else {
+                    input.client.held.remove(input.action);
+                }
+            }
+
+            // Only the player of the current tank's input counts, as on a shared keyboard
+            actions.clear();
+            Tank tank = simulation.getCurrentTank();
+            for (GameServer.Client client : clients) {
+                if (tank != null && client.letters.contains(tank.getIdentifier())) {
+                    actions.addAll(client.held);
+                    actions.addAll(client.pressed);
+                }
+                anyHeld |= !client.held.isEmpty();
+                client.pressed.clear();
+            }
+            simulation.step(actions);
+            broadcastState();
+            SpectatorFeed spectatorFeed = feed;
+            if (spectatorFeed != null) {
+                long before = spectatorFeed.getPublished();
+                spectatorFeed.publish();
+                fed = spectatorFeed.getPublished() > before;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        stats.record(nanos);
+        GameMetrics.shared().recordTick(nanos);
+        if (fed) {
+            for (GameServer.Client spectator : spectators) {
+                spectator.server.wantsWrite(spectator);
+            }
+        }
+
+        ScheduledFuture<?> future = ticking; // Null if this first tick beat wake() to setting it
+        if (future != null && !anyHeld && simulation.isSettled() && inbox.isEmpty()) {
+            future.cancel(false);
+            ticking = null;
+            scheduled.set(false);
+            if (!inbox.isEmpty()) {
+                wake(); // Input that arrived while stopping
+            }
+        }
+    }
+
+    private void broadcastState() {
+        if (clients.isEmpty()) {
+            return;
+        }
+        state.setLength(0);
+        Tank current = simulation.getCurrentTank();
+        state.append("STATE ").append(simulation.getTick())
+                .append(' ').append(simulation.getWind().getWindForce())
+                .append(' ').append(current == null ? '-' : current.getIdentifier())
+                .append(' ').append(simulation.isGameOver() ? "over" : "playing");
+        for (Tank tank : simulation.getTanks()) {
+            state.append(' ').append(tank.getIdentifier()).append(':').append(Math.round(tank.getX()))
+                    .append(',').append(Math.round(tank.getY())).append(',').append(tank.getHealth())
+                    .append(',').append(tank.getPower()).append(',').append(tank.getFuel())
+                    .append(',').append(simulation.getScoreboard().getScore(tank.getIdentifier()));
+        }
+        ProjectileSystem projectiles = simulation.getProjectiles();
+        for (int i = 0; i < projectiles.size(); i++) {
+            state.append(" shell:").append(Math.round(projectiles.getX(i))).append(',').append(Math.round(projectiles.getY(i)));
+        }
+        String line = state.toString();
+        for (GameServer.Client client : clients) {
+            client.send(line);
+        }
+    }
+
+    /**
+     * Running totals of how long a room's ticks take, for sizing how many rooms a server can hold.
+     * Durations are also counted into power-of-two buckets, from which percentiles are estimated.
+     */
+    public static class TickStats {
+        private final long[] buckets = new long[40]; // Bucket b counts ticks of 2^b to 2^(b+1) nanoseconds
+        private long count, totalNanos, maxNanos;
+
+        synchronized void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            buckets[Math.min(buckets.length - 1, 63 - Long.numberOfLeadingZeros(Math.max(1, nanos)))]++;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @param fraction the fraction of ticks, e.g. 0.99
+         * @return a duration at least that fraction of ticks finished within, to a factor of two
+         */
+        public synchronized long getPercentileNanos(double fraction) {
+            long target = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= target && seen > 0) {
+                    return 2L << b;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Adds another room's totals to these.
+         */
+        synchronized void add(TickStats other) {
+            synchronized (other) {
+                count += other.count;
+                totalNanos += other.totalNanos;
+                maxNanos = Math.max(maxNanos, other.maxNanos);
+                for (int b = 0; b < buckets.length; b++) {
+                    buckets[b] += other.buckets[b];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the set of letters a join request names, ignoring anything that is not a tank letter
+     */
+    static Set<Character> letters(String requested) {
+        Set<Character> letters = new HashSet<>();
+        for (char c : requested.toUpperCase().toCharArray()) {
+            if (c >= 'A' && c <= 'Z') {
+                letters.add(c);
+            }
+        }
+        return letters;
+    }
+}
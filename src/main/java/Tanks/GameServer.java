@@ -0,0 +1,375 @@
+package Tanks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless server hosting many independent matches, each in its own GameRoom.
+ * All connections are served by one thread over a non-blocking Selector, and rooms tick on a small shared
+ * pool, only while something in their match is happening, so idle connections and idle rooms cost next to
+ * nothing.
+ *
+ * Clients speak a line-based text protocol over TCP:
+ * <ul>
+ *     <li>{@code JOIN <room> [letters]} joins or creates a room, playing the tanks with the given letters, or
+ *     watching if none are given. The server replies {@code JOINED <room> <seed>}.</li>
+ *     <li>{@code DOWN <action>} and {@code UP <action>} hold and release a key, e.g. {@code DOWN MOVE_LEFT}.</li>
+ *     <li>{@code PRESS <action>} does a one-off action, e.g. {@code PRESS FIRE}.</li>
+ *     <li>{@code WATCH <room>} spectates a room. The server replies {@code WATCHING <room>}, after which the
+ *     connection carries the room's binary SpectatorFeed instead of text.</li>
+ *     <li>{@code STATS} lists every room's tick times; {@code QUIT} leaves.</li>
+ * </ul>
+ * While a room ticks, each tick sends {@code STATE <tick> <wind> <current tank> <playing|over>} followed by
+ * {@code <letter>:<x>,<y>,<health>,<power>,<fuel>,<score>} for each tank and {@code shell:<x>,<y>} for each shell.
+ *
+ * Usage: {@code GameServer [--port 7100] [--config config.json] [--threads <cores>] [--report-seconds 10]}
+ */
+public class GameServer implements AutoCloseable {
+    private static final int MAX_LINE = 256;
+    static final int MAX_QUEUED = 300; // Lines a client may fall behind by, ten seconds of STATE, before it is dropped
+
+    /**
+     * A connected client and the room it is in.
+     */
+    static class Client {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+        final StringBuilder line = new StringBuilder();
+        final ConcurrentLinkedQueue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger(); // Lines in the outbox
+        volatile boolean tooSlow; // Stopped reading, so it is disconnected instead of queueing without end
+        final GameServer server;
+        volatile Set<Character> letters = Set.of();
+        GameRoom room;
+        SpectatorFeed.Subscriber subscriber; // Set once the client watches a room, and only used on the IO thread
+        // Only touched by the room's tick
+        final EnumSet<Action> held = EnumSet.noneOf(Action.class), pressed = EnumSet.noneOf(Action.class);
+
+        Client(SocketChannel channel, GameServer server) {
+            this.channel = channel;
+            this.server = server;
+        }
+
+        /**
+         * Queues a line to the client from any thread.
+         */
+        void send(String message) {
+            if (queued.incrementAndGet() > MAX_QUEUED) {
+                queued.decrementAndGet();
+                tooSlow = true;
+            } else {
+                outbox.add(ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.UTF_8)));
+            }
+            server.wantsWrite(this);
+        }
+    }
+
+    private final String configPath;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ScheduledExecutorService tickPool;
+    private final ConcurrentHashMap<String, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Client> writers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final GameRoom.TickStats closedRoomStats = new GameRoom.TickStats(); // Ticks of rooms since closed
+    private volatile boolean running = true;
+
+    /**
+     * @param port port to listen on, or 0 for any free port
+     * @param configPath config file every room plays
+     * @param tickThreads threads rooms tick on
+     */
+    public GameServer(int port, String configPath, int tickThreads) throws IOException {
+        this.configPath = configPath;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        GameMetrics.shared().register();
+        AtomicInteger threadNumber = new AtomicInteger();
+        tickPool = Executors.newScheduledThreadPool(tickThreads, runnable -> {
+            Thread thread = new Thread(runnable, "room-tick-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Serves connections on the calling thread until close() is called.
+     */
+    public void run() throws IOException {
+        while (running) {
+            selector.select();
+            for (Client client; (client = writers.poll()) != null; ) {
+                SelectionKey key = client.channel.keyFor(selector);
+                if (client.tooSlow) {
+                    disconnect(client);
+                } else if (key != null && key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable()) {
+                            read(client);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(client, key);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (e instanceof RuntimeException) {
+                        System.err.println("Dropping client after error: " + e);
+                    }
+                    if (key.attachment() != null) {
+                        disconnect((Client) key.attachment());
+                    }
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Client(channel, this));
+        connections.incrementAndGet();
+    }
+
+    private void read(Client client) throws IOException {
+        int read = client.channel.read(client.readBuffer);
+        if (read < 0) {
+            disconnect(client);
+            return;
+        }
+        client.readBuffer.flip();
+        while (client.readBuffer.hasRemaining() && client.channel.isOpen()) { // Anything sent after QUIT is ignored
+            char c = (char) client.readBuffer.get();
+            if (c == '\n') {
+                handle(client, client.line.toString().trim());
+                client.line.setLength(0);
+            } else if (client.line.length() < MAX_LINE) {
+                client.line.append(c);
+            }
+        }
+        client.readBuffer.clear();
+    }
+
+    private void write(Client client, SelectionKey key) throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = client.outbox.peek()) != null) {
+            client.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return; // Socket full; carry on when it drains
+            }
+            client.outbox.poll();
+            client.queued.decrementAndGet();
+        }
+        if (client.subscriber != null && !client.subscriber.writeTo(client.channel)) {
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (!client.outbox.isEmpty()) {
+            wantsWrite(client); // Queued after the loop looked
+        }
+    }
+
+    void wantsWrite(Client client) {
+        writers.add(client);
+        selector.wakeup();
+    }
+
+    private void handle(Client client, String line) {
+        String[] words = line.split("\\s+");
+        switch (words[0].toUpperCase()) {
+            case "JOIN":
+                if (words.length < 2) {
+                    client.send("ERROR JOIN needs a room name");
+                    return;
+                }
+                leaveRoom(client);
+                client.letters = words.length > 2 ? GameRoom.letters(words[2]) : Set.of();
+                client.room = rooms.computeIfAbsent(words[1], name -> new GameRoom(name, configPath, tickPool));
+                client.room.join(client);
+                break;
+            case "WATCH":
+                if (words.length < 2) {
+                    client.send("ERROR WATCH needs a room name");
+                    return;
+                }
+                leaveRoom(client);
+                client.room = rooms.computeIfAbsent(words[1], name -> new GameRoom(name, configPath, tickPool));
+                client.room.watch(client);
+                break;
+            case "DOWN":
+            case "UP":
+            case "PRESS":
+                Action action = words.length > 1 ? parseAction(words[1]) : null;
+                if (client.room == null || action == null || client.subscriber != null) {
+                    client.send("ERROR " + (client.room == null ? "not in a room" : "unknown action"));
+                    return;
+                }
+                client.room.input(client, action, !words[0].equalsIgnoreCase("UP"));
+                break;
+            case "STATS":
+                for (String report : report()) {
+                    client.send(report);
+                }
+                break;
+            case "QUIT":
+                disconnect(client);
+                break;
+            case "":
+                break;
+            default:
+                client.send("ERROR unknown command " + words[0]);
+        }
+    }
+
+    private static Action parseAction(String name) {
+        try {
+            return Action.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void leaveRoom(Client client) {
+        if (client.room != null) {
+            GameRoom room = client.room;
+            client.room = null;
+            client.subscriber = null;
+            if (room.leave(client)) {
+                rooms.remove(room.getName(), room);
+                closedRoomStats.add(room.getStats());
+            }
+        }
+    }
+
+    private void disconnect(Client client) {
+        if (!client.channel.isOpen()) {
+            return; // Already disconnected
+        }
+        leaveRoom(client);
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+        connections.decrementAndGet();
+    }
+
+    /**
+     * @return a line for each room with its tick count and times, then a line totalling every room
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        GameRoom.TickStats total = new GameRoom.TickStats();
+        total.add(closedRoomStats);
+        int ticking = 0;
+        for (GameRoom room : rooms.values()) {
+            GameRoom.TickStats stats = room.getStats();
+            total.add(stats);
+            ticking += room.isTicking() ? 1 : 0;
+            lines.add(describe("ROOM " + room.getName() + (room.isTicking() ? " ticking" : " idle"), stats));
+        }
+        lines.add(describe("TOTAL " + rooms.size() + " rooms, " + ticking + " ticking, " + connections.get() + " connections,", total));
+        return lines;
+    }
+
+    private static String describe(String label, GameRoom.TickStats stats) {
+        long count = stats.getCount();
+        return String.format("%s %d ticks, mean %.1f us, p99 < %.1f us, max %.1f us", label, count,
+                count == 0 ? 0 : stats.getTotalNanos() / 1000.0 / count, stats.getPercentileNanos(0.99) / 1000.0,
+                stats.getMaxNanos() / 1000.0);
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * @return the room with the given name, or null if there is none
+     */
+    public GameRoom getRoom(String name) {
+        return rooms.get(name);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (GameRoom room : rooms.values()) {
+            room.close();
+        }
+        tickPool.shutdownNow();
+        try {
+            selector.wakeup();
+            serverChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close server", e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 7100, threads = Runtime.getRuntime().availableProcessors(), reportSeconds = 10;
+        String configPath = "config.json";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--config":
+                    configPath = args[i + 1];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--report-seconds":
+                    reportSeconds = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        GameServer server = new GameServer(port, configPath, threads);
+        System.out.println("Serving " + configPath + " on port " + server.getPort() + " with " + threads + " tick threads");
+        server.tickPool.scheduleAtFixedRate(() -> {
+            List<String> report = server.report();
+            System.out.println(report.get(report.size() - 1));
+        }, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        server.run();
+    }
+}
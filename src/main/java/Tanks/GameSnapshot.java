@@ -0,0 +1,94 @@
+package Tanks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Everything needed to put a Simulation back exactly as it was on one tick: the terrain surface, every tank's
+ * position, health, fuel, power, parachutes and shield, the shells in the air, the explosions growing, the wind,
+ * the random sequence and the scores.
+ * The state is copied into flat primitive arrays that are kept and reused, so once a snapshot has been taken
+ * once, taking and restoring it again copies a few kilobytes and allocates nothing. Objects such as tanks and
+ * terrains are held by reference and have their fields written back on restore, which keeps everything that
+ * points at them valid. Use it for lookahead search, undoing a turn or rolling a networked match back.
+ */
+public class GameSnapshot {
+    static final int TANK_FLOATS = 5, TANK_INTS = 7; // Fields each tank saves, see Tank.saveTo
+
+    // The match as a whole
+    long tick;
+    int levelIndex;
+    int currentTankIndex;
+    boolean waitingForNextLevel, gameOver;
+    long levelTransitionStartTick;
+    long randomState;
+    Wind wind;
+    int windForce;
+
+    // The level being played
+    Terrain terrain;
+    TankIndex tankIndex;
+    float[] heights = new float[0];
+    final ArrayList<Tree> trees = new ArrayList<>();
+    int treeHeight;
+
+    // Tanks, in play order, with their state in the flat arrays
+    final ArrayList<Tank> tanks = new ArrayList<>();
+    float[] tankFloats = new float[0];
+    int[] tankInts = new int[0];
+    long[] tankTurnStarts = new long[0];
+
+    // Shells, copied into a system of their own
+    final ProjectileSystem projectiles = new ProjectileSystem();
+
+    // Explosions, whose only changing state is their radius
+    final ArrayList<Explosion> explosions = new ArrayList<>();
+    float[] explosionRadii = new float[0];
+
+    // Scores by player
+    int players;
+    char[] playerIds = new char[0];
+    int[] scores = new int[0], damageDealt = new int[0];
+
+    /**
+     * Replaces a list's contents with another's. Not addAll, which copies the source into a new array.
+     */
+    static <T> void copy(ArrayList<T> from, ArrayList<T> to) {
+        to.clear();
+        for (int i = 0; i < from.size(); i++) {
+            to.add(from.get(i));
+        }
+    }
+
+    /**
+     * Makes sure the tank arrays have room for the given number of tanks, keeping them if they do.
+     */
+    void ensureTanks(int count) {
+        if (tankTurnStarts.length < count) {
+            tankFloats = Arrays.copyOf(tankFloats, count * TANK_FLOATS);
+            tankInts = Arrays.copyOf(tankInts, count * TANK_INTS);
+            tankTurnStarts = Arrays.copyOf(tankTurnStarts, count);
+        }
+    }
+
+    void ensureExplosions(int count) {
+        if (explosionRadii.length < count) {
+            explosionRadii = Arrays.copyOf(explosionRadii, count);
+        }
+    }
+
+    void ensurePlayers(int count) {
+        if (playerIds.length < count) {
+            playerIds = Arrays.copyOf(playerIds, count);
+            scores = Arrays.copyOf(scores, count);
+            damageDealt = Arrays.copyOf(damageDealt, count);
+        }
+    }
+
+    /**
+     * @return the tick the snapshot was taken on
+     */
+    public long getTick() {
+        return tick;
+    }
+}
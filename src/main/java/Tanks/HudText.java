@@ -0,0 +1,26 @@
+package Tanks;
+
+/**
+ * A HUD label made of fixed text followed by a number, such as "Fuel: 250". The string is only built again when
+ * the number changes, so drawing an unchanged label every frame allocates nothing.
+ */
+final class HudText {
+    private final String prefix;
+    private int value;
+    private String text;
+
+    HudText(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return the label showing the given value, the same string as last time if the value has not changed
+     */
+    String of(int value) {
+        if (text == null || value != this.value) {
+            this.value = value;
+            text = prefix + value;
+        }
+        return text;
+    }
+}
@@ -0,0 +1,136 @@
+package Tanks;
+
+import processing.core.PApplet;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Everything needed to start a level that can be worked out ahead of time: the terrain with its heightmap
+ * already built, and where the tanks and trees start. Loading one only reads files and does arithmetic, so it
+ * is safe to do on a background thread while the current level is still being played.
+ */
+public class Level {
+    private static final int ROWS = 20; // The bottom of the map is 20 rows down
+
+    private int levelIndex;
+    private Terrain terrain;
+    private ArrayList<Character> tankIdentifiers = new ArrayList<>();
+    private ArrayList<Float> tankXs = new ArrayList<>();
+    private ArrayList<Float> treeXs = new ArrayList<>();
+    private int treeHeight;
+
+    private Level(int levelIndex) {
+        this.levelIndex = levelIndex;
+    }
+
+    /**
+     * Creates a level around terrain that has already been built, for loaders that do not parse layout files.
+     */
+    Level(int levelIndex, Terrain terrain) {
+        this.levelIndex = levelIndex;
+        this.terrain = terrain;
+    }
+
+    void addTank(char identifier, float x) {
+        tankIdentifiers.add(identifier);
+        tankXs.add(x);
+    }
+
+    void addTree(float x) {
+        treeXs.add(x);
+    }
+
+    /**
+     * Loads a level's terrain and spawn points, from the compiled level pack if the configuration has one
+     * and otherwise by reading its layout file, where terrain comes from the 'X' cells, tanks from the
+     * letters A to I and trees from 'T'.
+     *
+     * @param config the game configuration the level belongs to
+     * @param levelIndex which level to load
+     * @param width width of the world in pixels
+     * @param height height of the world in pixels
+     * @return the prepared level
+     */
+    public static Level load(GameConfig config, int levelIndex, int width, int height) {
+        GameEvents.LevelLoadEvent event = new GameEvents.LevelLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Level level = read(config, levelIndex, width, height);
+        level.treeHeight = config.getTreeHeight(levelIndex);
+        GameMetrics.shared().recordLevelLoad(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.level = levelIndex;
+            event.fromPack = config.getLevelPack() != null;
+            event.tanks = level.getTankCount();
+            event.trees = level.getTreeCount();
+            event.columns = level.getTerrain().getWidth();
+            event.commit();
+        }
+        return level;
+    }
+
+    private static Level read(GameConfig config, int levelIndex, int width, int height) {
+        if (config.getLevelPack() != null) {
+            return config.getLevelPack().load(levelIndex, width, height);
+        }
+        String[] lines = PApplet.loadStrings(new File(config.getLayoutFilename(levelIndex)));
+        Level level = new Level(levelIndex);
+        int[] heights = new int[width / App.CELLSIZE + 1]; // One more column than fits on screen, as the layouts have
+
+        for (int row = 0; row < lines.length; row++) {
+            for (int col = 0; col < lines[row].length() && col < heights.length; col++) {
+                char ch = lines[row].charAt(col);
+                float x = col * App.CELLSIZE + App.CELLSIZE / 2.0f;
+
+                if (ch == 'X') {
+                    heights[col] = ROWS - row;
+                } else if (ch >= 'A' && ch <= 'I') {
+                    level.addTank(ch, x);
+                } else if (ch == 'T') {
+                    level.addTree(x);
+                }
+            }
+        }
+
+        level.terrain = new Terrain(width, height, config.getForegroundColour(levelIndex));
+        level.terrain.loadHeights(heights);
+        return level;
+    }
+
+    public int getLevelIndex() {
+        return levelIndex;
+    }
+
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    public int getTankCount() {
+        return tankIdentifiers.size();
+    }
+
+    public char getTankIdentifier(int index) {
+        return tankIdentifiers.get(index);
+    }
+
+    public float getTankX(int index) {
+        return tankXs.get(index);
+    }
+
+    public int getTreeCount() {
+        return treeXs.size();
+    }
+
+    public float getTreeX(int index) {
+        return treeXs.get(index);
+    }
+
+    /**
+     * @return how tall the level's trees are drawn in pixels, or 0 if it has no tree image
+     */
+    public int getTreeHeight() {
+        return treeHeight;
+    }
+}
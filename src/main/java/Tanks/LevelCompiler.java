@@ -0,0 +1,23 @@
+package Tanks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command-line tool that compiles the levels in a config file and their layout files into a LevelPack.
+ * Point the game at the result by adding {@code "level_pack": "levels.pack"} to the config.
+ *
+ * Usage: {@code LevelCompiler [config.json] [levels.pack]}
+ */
+public class LevelCompiler {
+
+    public static void main(String[] args) throws IOException {
+        String configPath = args.length > 0 ? args[0] : "config.json";
+        Path output = Paths.get(args.length > 1 ? args[1] : "levels.pack");
+
+        GameConfig config = new GameConfig(configPath);
+        long size = LevelPack.write(config, output, App.WIDTH, App.HEIGHT);
+        System.out.println("Compiled " + config.getLevelCount() + " levels from " + configPath + " into " + output + " (" + size + " bytes)");
+    }
+}
@@ -0,0 +1,50 @@
+package Tanks;
+
+import processing.core.PApplet;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prepares levels and their images on background threads so level changes never stall a frame.
+ * The threads are daemons, so a pending load never keeps the game from exiting.
+ */
+public final class LevelLoader {
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                Thread thread = new Thread(runnable, "level-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private LevelLoader() {
+    }
+
+    /**
+     * Starts loading a level's layout and terrain in the background.
+     *
+     * @param config the game configuration the level belongs to
+     * @param levelIndex which level to load
+     * @param width width of the world in pixels
+     * @param height height of the world in pixels
+     * @return the level, once it has been prepared
+     */
+    public static Future<Level> prepare(GameConfig config, int levelIndex, int width, int height) {
+        return executor.submit(() -> Level.load(config, levelIndex, width, height));
+    }
+
+    /**
+     * Starts decoding a level's images into the shared AssetCache in the background.
+     *
+     * @param app the sketch used to decode the images
+     * @param config the game configuration the level belongs to
+     * @param levelIndex which level to preload
+     * @param width width the background is drawn at
+     * @param height height the background is drawn at
+     * @return completes once the images are cached
+     */
+    public static Future<?> preloadImages(PApplet app, GameConfig config, int levelIndex, int width, int height) {
+        return executor.submit(() -> config.preloadImages(app, levelIndex, width, height));
+    }
+}
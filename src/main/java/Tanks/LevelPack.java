@@ -0,0 +1,218 @@
+package Tanks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * A versioned binary file holding many compiled levels, read through a memory-mapped FileChannel.
+ * Each level stores its finished heightmap, spawn points, terrain colour and image paths, so loading one is a
+ * copy out of the mapping with no text parsing or curve building. An index at the front of the file gives the
+ * offset of every level, so any level is found in constant time however many the pack holds.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * int magic ("TWLP"), int version, int levelCount
+ * levelCount x (long offset, int length)
+ * levelCount x level:
+ *   int foregroundColour, string background, string trees (length -1 when absent)
+ *   int columns, float[columns] surface height above the bottom of the world
+ *   int tanks, tanks x (char identifier, float x)
+ *   int trees, float[trees] x
+ * </pre>
+ * Strings are an int byte length followed by UTF-8 bytes.
+ */
+public class LevelPack {
+    private static final int MAGIC = 0x54574C50; // "TWLP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int INDEX_ENTRY_BYTES = 12;
+
+    private final MappedByteBuffer buffer;
+    private final int levelCount;
+
+    private LevelPack(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a level pack");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported level pack version " + version + ", expected " + VERSION);
+        }
+        this.levelCount = buffer.getInt(8);
+    }
+
+    /**
+     * Maps a level pack into memory. The mapping stays valid after the file is closed.
+     *
+     * @param path the pack file
+     * @return the opened pack
+     */
+    public static LevelPack open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new LevelPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open level pack " + path, e);
+        }
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * @return a private view of the mapping positioned at the start of the level, safe to use from any thread
+     */
+    private ByteBuffer record(int levelIndex) {
+        if (levelIndex < 0 || levelIndex >= levelCount) {
+            throw new IndexOutOfBoundsException("Level " + levelIndex + " of " + levelCount);
+        }
+        int entry = HEADER_BYTES + levelIndex * INDEX_ENTRY_BYTES;
+        ByteBuffer record = buffer.duplicate();
+        record.position((int) buffer.getLong(entry));
+        return record;
+    }
+
+    public int getForegroundColour(int levelIndex) {
+        return record(levelIndex).getInt();
+    }
+
+    public String getBackgroundPath(int levelIndex) {
+        ByteBuffer record = record(levelIndex);
+        record.getInt();
+        return readString(record);
+    }
+
+    /**
+     * @return path of the level's tree image, or null if it has none
+     */
+    public String getTreeImagePath(int levelIndex) {
+        ByteBuffer record = record(levelIndex);
+        record.getInt();
+        readString(record);
+        return readString(record);
+    }
+
+    /**
+     * Builds a level straight from its compiled data.
+     *
+     * @param levelIndex which level to load
+     * @param width width of the world in pixels
+     * @param height height of the world in pixels
+     * @return the level, ready to be started
+     */
+    public Level load(int levelIndex, int width, int height) {
+        ByteBuffer record = record(levelIndex);
+        int foregroundColour = record.getInt();
+        readString(record);
+        readString(record);
+
+        float[] heights = new float[record.getInt()];
+        record.asFloatBuffer().get(heights);
+        record.position(record.position() + heights.length * Float.BYTES);
+        Terrain terrain = new Terrain(width, height, foregroundColour);
+        terrain.loadPixelHeights(heights);
+
+        Level level = new Level(levelIndex, terrain);
+        int tankCount = record.getInt();
+        for (int i = 0; i < tankCount; i++) {
+            level.addTank(record.getChar(), record.getFloat());
+        }
+        int treeCount = record.getInt();
+        for (int i = 0; i < treeCount; i++) {
+            level.addTree(record.getFloat());
+        }
+        return level;
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compiles every level of a text configuration into a pack file.
+     *
+     * @param config the configuration whose levels and layout files are compiled
+     * @param output where to write the pack
+     * @param width width of the world the levels are built for
+     * @param height height of the world the levels are built for
+     * @return size of the written pack in bytes
+     * @throws IOException if the pack cannot be written
+     */
+    public static long write(GameConfig config, Path output, int width, int height) throws IOException {
+        int levelCount = config.getLevelCount();
+        ArrayList<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < levelCount; i++) {
+            records.add(compile(config, Level.load(config, i, width, height), i));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(levelCount);
+        long offset = HEADER_BYTES + (long) levelCount * INDEX_ENTRY_BYTES;
+        for (byte[] record : records) {
+            out.writeLong(offset);
+            out.writeInt(record.length);
+            offset += record.length;
+        }
+        for (byte[] record : records) {
+            out.write(record);
+        }
+        out.flush();
+        Files.write(output, bytes.toByteArray());
+        return bytes.size();
+    }
+
+    private static byte[] compile(GameConfig config, Level level, int levelIndex) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(config.getForegroundColour(levelIndex));
+        writeString(out, config.getBackgroundPath(levelIndex));
+        writeString(out, config.getTreeImagePath(levelIndex));
+
+        float[] heights = level.getTerrain().getPixelHeights();
+        out.writeInt(heights.length);
+        for (float columnHeight : heights) {
+            out.writeFloat(columnHeight);
+        }
+        out.writeInt(level.getTankCount());
+        for (int i = 0; i < level.getTankCount(); i++) {
+            out.writeChar(level.getTankIdentifier(i));
+            out.writeFloat(level.getTankX(i));
+        }
+        out.writeInt(level.getTreeCount());
+        for (int i = 0; i < level.getTreeCount(); i++) {
+            out.writeFloat(level.getTreeX(i));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,335 @@
+package Tanks;
+
+import processing.core.PApplet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One peer of a networked match. Every peer runs the whole simulation itself and the peers only exchange their
+ * players' inputs, one action mask per tick, over non-blocking UDP.
+ *
+ * A peer's own input is applied on the very tick it is given, so the game responds as quickly as it does
+ * offline. Input that has not yet arrived from another peer is predicted: keys held on its last known tick are
+ * assumed to be held still, and one-off actions such as FIRE are assumed not to happen. When the real input
+ * arrives and differs from the prediction on a tick where it mattered, the match is restored from the snapshot
+ * taken before that tick and stepped forward again with the corrected inputs. Only the peer playing the current
+ * tank affects a tick, so most late input needs no rollback at all. A peer that gets more than MAX_ROLLBACK ticks
+ * ahead of another's input waits for it rather than predicting further.
+ *
+ * Each packet carries every input the receiver has not acknowledged yet, so a lost packet is made up for by the
+ * next one. Tanks are shared round the peers in order: A plays from the first peer, B from the second, and so on.
+ *
+ * Usage: {@code NetworkSession --id <n> --peers host:port,host:port[,...] [--seed 1] [--config config.json]},
+ * with the same peer list and seed on every peer.
+ */
+public class NetworkSession implements AutoCloseable {
+    static final int MAX_ROLLBACK = 30; // Ticks, one second at 30 ticks a second
+    private static final int HISTORY = 128; // Input ring size, more than the ticks peers can be apart either way
+    private static final int MAX_INPUTS_PER_PACKET = 64;
+    private static final int MAGIC = 0x54574E53; // "TWNS"
+    private static final int CONTINUOUS_MASK = ReplayRecorder.mask(Action.CONTINUOUS);
+
+    private final DatagramChannel channel;
+    private final List<InetSocketAddress> peers;
+    private final int localPeer;
+    private final Simulation simulation;
+    private final ByteBuffer packet = ByteBuffer.allocate(16 + 2 * MAX_INPUTS_PER_PACKET);
+
+    private final int[][] inputs; // Each peer's action mask for each tick, indexed by tick % HISTORY
+    private final long[] confirmed; // Last tick whose input has arrived from each peer, -1 for none
+    private final long[] ackedBy; // Last tick of our input each peer has said it received
+    private final boolean[] heard;
+
+    private final GameSnapshot[] snapshots = new GameSnapshot[MAX_ROLLBACK + 1]; // Taken before each tick
+    private final int[] usedPeer = new int[HISTORY], usedMask = new int[HISTORY]; // Input each tick was stepped with
+    private final EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+    private long tick = 0; // Next tick to simulate; unlike Simulation.getTick it also counts ticks after the game ends
+    private long rollbackFrom = Long.MAX_VALUE;
+    private int rollbacks = 0;
+    private long ticksResimulated = 0;
+
+    /**
+     * Binds to this peer's address in the list and starts a match.
+     *
+     * @param localPeer index of this peer in the list
+     * @param peers every peer's address, in the same order on every peer
+     * @param configPath the config file, the same on every peer
+     * @param seed the match's seed, the same on every peer
+     */
+    public NetworkSession(int localPeer, List<InetSocketAddress> peers, String configPath, long seed) throws IOException {
+        this(openChannel(peers.get(localPeer)), localPeer, peers, new GameConfig(configPath), seed);
+    }
+
+    /**
+     * @param channel a channel bound to this peer's address
+     */
+    NetworkSession(DatagramChannel channel, int localPeer, List<InetSocketAddress> peers, GameConfig config, long seed) throws IOException {
+        if (peers.size() < 2 || peers.size() > 9) {
+            throw new IllegalArgumentException("A networked match needs 2 to 9 peers, not " + peers.size());
+        }
+        this.channel = channel;
+        channel.configureBlocking(false);
+        this.peers = peers;
+        this.localPeer = localPeer;
+        this.simulation = new Simulation(config, App.WIDTH, App.HEIGHT, seed);
+        inputs = new int[peers.size()][HISTORY];
+        confirmed = new long[peers.size()];
+        ackedBy = new long[peers.size()];
+        heard = new boolean[peers.size()];
+        Arrays.fill(confirmed, -1);
+        Arrays.fill(ackedBy, -1);
+        heard[localPeer] = true;
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = new GameSnapshot();
+        }
+    }
+
+    private static DatagramChannel openChannel(InetSocketAddress address) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(address);
+        return channel;
+    }
+
+    /**
+     * @param tank a tank
+     * @return the index of the peer that plays it
+     */
+    int peerFor(Tank tank) {
+        return Math.floorMod(tank.getIdentifier() - 'A', peers.size());
+    }
+
+    /**
+     * Receives whatever input has arrived, rolls the match back and forward again if any of it changes the past,
+     * and sends this peer's input to anyone still missing some. Call it every frame, even while waiting.
+     */
+    public void poll() {
+        try {
+            packet.clear();
+            while (channel.receive(packet) != null) {
+                packet.flip();
+                receive(packet);
+                packet.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not receive from peers", e);
+        }
+        if (rollbackFrom < tick) {
+            resimulate(rollbackFrom);
+        }
+        rollbackFrom = Long.MAX_VALUE;
+        send();
+    }
+
+    private void receive(ByteBuffer packet) {
+        if (packet.remaining() < 15 || packet.getInt() != MAGIC) {
+            return; // Not ours
+        }
+        int peer = packet.get();
+        if (peer < 0 || peer >= peers.size() || peer == localPeer) {
+            return;
+        }
+        heard[peer] = true;
+        ackedBy[peer] = Math.max(ackedBy[peer], packet.getInt());
+        long first = packet.getInt();
+        int count = packet.getShort();
+        for (long t = first; t < first + count && packet.remaining() >= 2; t++) {
+            int mask = packet.getShort();
+            if (t != confirmed[peer] + 1) {
+                continue; // Already have it, or a gap that a later packet will fill
+            }
+            int slot = (int) (t % HISTORY);
+            inputs[peer][slot] = mask;
+            confirmed[peer] = t;
+            if (t < tick && usedPeer[slot] == peer && usedMask[slot] != mask) {
+                rollbackFrom = Math.min(rollbackFrom, t); // Predicted wrong on a tick this peer was playing
+            }
+        }
+    }
+
+    private void send() {
+        for (int peer = 0; peer < peers.size(); peer++) {
+            if (peer == localPeer) {
+                continue;
+            }
+            long first = ackedBy[peer] + 1;
+            int count = (int) Math.min(MAX_INPUTS_PER_PACKET, tick - first);
+            packet.clear();
+            packet.putInt(MAGIC);
+            packet.put((byte) localPeer);
+            packet.putInt((int) confirmed[peer]);
+            packet.putInt((int) first);
+            packet.putShort((short) count);
+            for (long t = first; t < first + count; t++) {
+                packet.putShort((short) inputs[localPeer][(int) (t % HISTORY)]);
+            }
+            packet.flip();
+            try {
+                channel.send(packet, peers.get(peer));
+            } catch (IOException e) {
+                // A peer that is not up yet refuses the packet; the next frame sends it again
+            }
+        }
+    }
+
+    /**
+     * @return true once every peer has been heard from and none is so far behind that this peer must wait for it
+     */
+    public boolean canAdvance() {
+        for (int peer = 0; peer < peers.size(); peer++) {
+            if (!heard[peer] || (peer != localPeer && tick - confirmed[peer] > MAX_ROLLBACK)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Simulates the next tick with this peer's input applied straight away and other peers' input as known or
+     * predicted, then sends the input out.
+     *
+     * @param localActions the actions of this peer's player this tick
+     */
+    public void advance(Set<Action> localActions) {
+        int slot = (int) (tick % HISTORY);
+        inputs[localPeer][slot] = ReplayRecorder.mask(localActions);
+        confirmed[localPeer] = tick;
+        step(tick);
+        tick++;
+        send();
+    }
+
+    /**
+     * Restores the snapshot taken before a tick and simulates every tick since again.
+     */
+    private void resimulate(long from) {
+        simulation.restore(snapshots[(int) (from % snapshots.length)]);
+        for (long t = from; t < tick; t++) {
+            step(t);
+        }
+        rollbacks++;
+        ticksResimulated += tick - from;
+    }
+
+    private void step(long t) {
+        simulation.snapshot(snapshots[(int) (t % snapshots.length)]);
+        Tank tank = simulation.getCurrentTank();
+        int peer = tank == null ? -1 : peerFor(tank);
+        int mask = peer < 0 ? 0 : inputFor(peer, t);
+        int slot = (int) (t % HISTORY);
+        usedPeer[slot] = peer;
+        usedMask[slot] = mask;
+
+        actions.clear();
+        for (Action action : Action.values()) {
+            if ((mask & 1 << action.ordinal()) != 0) {
+                actions.add(action);
+            }
+        }
+        simulation.step(actions);
+    }
+
+    /**
+     * @return a peer's input for a tick if it has arrived, otherwise its held keys from the last tick that has
+     */
+    private int inputFor(int peer, long t) {
+        if (t <= confirmed[peer]) {
+            return inputs[peer][(int) (t % HISTORY)];
+        }
+        return confirmed[peer] < 0 ? 0 : inputs[peer][(int) (confirmed[peer] % HISTORY)] & CONTINUOUS_MASK;
+    }
+
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * @return the number of ticks simulated
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return the last tick for which every peer's input has arrived, after which the match can no longer change
+     */
+    public long getConfirmedTick() {
+        long last = tick - 1;
+        for (int peer = 0; peer < peers.size(); peer++) {
+            last = Math.min(last, confirmed[peer]);
+        }
+        return last;
+    }
+
+    /**
+     * @return how many times late input has rolled the match back
+     */
+    public int getRollbacks() {
+        return rollbacks;
+    }
+
+    /**
+     * @return how many ticks have been simulated again because of rollbacks
+     */
+    public long getTicksResimulated() {
+        return ticksResimulated;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close network channel", e);
+        }
+    }
+
+    private static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    public static void main(String[] args) throws IOException {
+        String configPath = "config.json", peerList = null;
+        int id = -1;
+        long seed = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--id":
+                    id = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--peers":
+                    peerList = args[i + 1];
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--config":
+                    configPath = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (id < 0 || peerList == null) {
+            System.err.println("Usage: NetworkSession --id <n> --peers host:port,host:port[,...] [--seed 1] [--config config.json]");
+            System.exit(2);
+        }
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String address : peerList.split(",")) {
+            peers.add(parseAddress(address.trim()));
+        }
+
+        App app = new App();
+        app.playNetworked(new NetworkSession(id, peers, configPath, seed));
+        PApplet.runSketch(new String[]{"Tanks.App"}, app);
+    }
+}
@@ -0,0 +1,18 @@
+package Tanks;
+
+import java.util.EnumSet;
+
+/**
+ * Plays the turns of some of the tanks by choosing their actions each tick, in place of the keyboard.
+ */
+public interface Player {
+
+    /**
+     * Chooses this tick's actions if the current tank is one this player controls.
+     *
+     * @param simulation the match being played
+     * @param actions the actions for this tick, added to
+     * @return true if it is one of this player's turns, in which case keyboard input should be ignored
+     */
+    boolean act(Simulation simulation, EnumSet<Action> actions);
+}
@@ -0,0 +1,257 @@
+package Tanks;
+
+import processing.core.PApplet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Every live shell in the game, stored as parallel arrays rather than one object per shell.
+ * Live shells are packed at the front of the arrays; removing one moves the last live shell into its slot,
+ * so the slots past {@link #size()} are the free list and spawning takes the first of them.
+ * Once the arrays have grown to the busiest tick's shell count, spawning, moving and removing shells
+ * allocates nothing, and a tick is a straight pass over primitive arrays however many shells are in the air.
+ */
+public class ProjectileSystem {
+    static final float GRAVITY = 0.32f; // Pixels per tick, per tick
+    private static final int INITIAL_CAPACITY = 64;
+    private static final float DIAMETER = 10;
+
+    private float[] x, y, previousX, previousY, vx, vy;
+    private float[] windAcceleration; // Change in vx per tick
+    private int[] colour;
+    private boolean[] armed; // Whether the shell has left the hit box of the tank that fired it
+    private Tank[] owner;
+    private int size = 0;
+
+    public ProjectileSystem() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        x = x == null ? new float[capacity] : Arrays.copyOf(x, capacity);
+        y = y == null ? new float[capacity] : Arrays.copyOf(y, capacity);
+        previousX = previousX == null ? new float[capacity] : Arrays.copyOf(previousX, capacity);
+        previousY = previousY == null ? new float[capacity] : Arrays.copyOf(previousY, capacity);
+        vx = vx == null ? new float[capacity] : Arrays.copyOf(vx, capacity);
+        vy = vy == null ? new float[capacity] : Arrays.copyOf(vy, capacity);
+        windAcceleration = windAcceleration == null ? new float[capacity] : Arrays.copyOf(windAcceleration, capacity);
+        colour = colour == null ? new int[capacity] : Arrays.copyOf(colour, capacity);
+        armed = armed == null ? new boolean[capacity] : Arrays.copyOf(armed, capacity);
+        owner = owner == null ? new Tank[capacity] : Arrays.copyOf(owner, capacity);
+    }
+
+    /**
+     * @param power the tank's power, from 0 to 100
+     * @return launch speed in pixels per tick
+     */
+    static float launchSpeed(int power) {
+        float velocityPerSecond = PApplet.map(power, 0, 100, 60, 540);
+        return velocityPerSecond / 30;
+    }
+
+    /**
+     * @param angle launch angle in degrees, 0 being straight up and positive to the right
+     * @param power the firing tank's power, from 0 to 100
+     * @return horizontal launch velocity in pixels per tick
+     */
+    static float launchVelocityX(float angle, int power) {
+        // StrictMath gives the same bits on every JVM and CPU, so a shot always lands in the same place
+        return launchSpeed(power) * (float) StrictMath.cos(PApplet.radians(angle - 90));
+    }
+
+    /**
+     * @param angle launch angle in degrees, 0 being straight up and positive to the right
+     * @param power the firing tank's power, from 0 to 100
+     * @return vertical launch velocity in pixels per tick, negative being upwards
+     */
+    static float launchVelocityY(float angle, int power) {
+        return launchSpeed(power) * (float) StrictMath.sin(PApplet.radians(angle - 90));
+    }
+
+    /**
+     * @param windForce the wind force when the shell was fired
+     * @return the change in horizontal velocity the wind causes each tick
+     */
+    static float windAcceleration(float windForce) {
+        return windForce * 0.03f / Simulation.TICK_RATE;
+    }
+
+    /**
+     * Launches a shell.
+     *
+     * @param startX x-coordinate to launch from
+     * @param startY y-coordinate to launch from
+     * @param angle launch angle in degrees, 0 being straight up and positive to the right
+     * @param power the firing tank's power, from 0 to 100
+     * @param windForce the current wind force
+     * @param shooter the tank firing the shell
+     */
+    public void spawn(float startX, float startY, float angle, int power, float windForce, Tank shooter) {
+        if (size == x.length) {
+            allocate(size * 2);
+        }
+        int i = size++;
+        x[i] = previousX[i] = startX;
+        y[i] = previousY[i] = startY;
+        vx[i] = launchVelocityX(angle, power);
+        vy[i] = launchVelocityY(angle, power);
+        windAcceleration[i] = windAcceleration(windForce);
+        colour[i] = shooter.getColour();
+        armed[i] = false;
+        owner[i] = shooter;
+    }
+
+    /**
+     * Moves every shell one tick, explodes the ones that hit a tank or the terrain and drops the ones that
+     * leave the world. The whole path a shell took this tick is tested, so fast shells cannot pass through
+     * thin ridges or tanks, and a shell explodes at the exact point it first touched something.
+     * Tanks near the path are found through the index, then tested exactly against their hit box.
+     *
+     * @param explosions the list of active explosions to which new explosions are added
+     * @param terrain the terrain shells can land on
+     * @param tankIndex index of all tanks in the game, which could be hit by a shell
+     */
+    public void update(ArrayList<Explosion> explosions, Terrain terrain, TankIndex tankIndex) {
+        float worldWidth = terrain.getWorldWidth(), worldHeight = terrain.getWorldHeight();
+        // Integrate every shell first, in a plain loop over the arrays the JIT can vectorise
+        for (int i = 0; i < size; i++) {
+            previousX[i] = x[i];
+            previousY[i] = y[i];
+            vx[i] += windAcceleration[i];
+            x[i] += vx[i];
+            y[i] += vy[i];
+            vy[i] += GRAVITY;
+        }
+
+        int i = 0;
+        while (i < size) {
+            float x0 = previousX[i], y0 = previousY[i];
+            float tankHit = tankHitTime(i, tankIndex);
+            // Shells leave from the foot of the turret, so the ground only counts once they are clear of the hull
+            // or falling back onto it
+            float groundHit = armed[i] || y[i] > y0 ? terrain.firstContact(x0, y0, x[i], y[i]) : -1;
+            float hit = tankHit < 0 ? groundHit : groundHit < 0 ? tankHit : Math.min(tankHit, groundHit);
+            if (hit >= 0) {
+                x[i] = x0 + (x[i] - x0) * hit;
+                y[i] = y0 + (y[i] - y0) * hit;
+                explosions.add(new Explosion(x[i], y[i], terrain, tankIndex, owner[i]));
+                remove(i);
+            } else if (y[i] >= worldHeight || y[i] <= 0 || x[i] < 0 || x[i] > worldWidth) {
+                remove(i); // Left the world without hitting anything
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Tests the path shell i took this tick against the tanks near it.
+     * A shell ignores the tank that fired it until it has cleared that tank's hit box.
+     * @return how far along the path the first tank hit is, from 0 to 1, or -1 if it hit no tank
+     */
+    private float tankHitTime(int i, TankIndex tankIndex) {
+        float x0 = previousX[i], y0 = previousY[i];
+        float x1 = x[i], y1 = y[i];
+        boolean wasArmed = armed[i];
+        if (!wasArmed) {
+            if (owner[i].hitTime(x1, y1, x1, y1) >= 0) {
+                return -1; // Still inside the barrel
+            }
+            armed[i] = true;
+        }
+
+        float firstHit = -1;
+        for (Tank tank : tankIndex.query(Math.min(x0, x1) - Tank.HALF_WIDTH, Math.max(x0, x1) + Tank.HALF_WIDTH)) {
+            // On the tick a shell clears its owner's hull its path starts inside it, which is not a hit
+            if (tank.getHealth() > 0 && (wasArmed || tank != owner[i])) {
+                float t = tank.hitTime(x0, y0, x1, y1);
+                if (t >= 0 && (firstHit < 0 || t < firstHit)) {
+                    firstHit = t;
+                }
+            }
+        }
+        return firstHit;
+    }
+
+    /**
+     * Frees slot i by moving the last live shell into it.
+     */
+    private void remove(int i) {
+        int last = --size;
+        x[i] = x[last];
+        y[i] = y[last];
+        previousX[i] = previousX[last];
+        previousY[i] = previousY[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        windAcceleration[i] = windAcceleration[last];
+        colour[i] = colour[last];
+        armed[i] = armed[last];
+        owner[i] = owner[last];
+        owner[last] = null;
+    }
+
+    /**
+     * Replaces every shell with a copy of another system's, growing the arrays only if they are too small.
+     * @param source the shells to copy
+     */
+    public void copyFrom(ProjectileSystem source) {
+        if (x.length < source.size) {
+            allocate(source.x.length);
+        }
+        int n = source.size;
+        System.arraycopy(source.x, 0, x, 0, n);
+        System.arraycopy(source.y, 0, y, 0, n);
+        System.arraycopy(source.previousX, 0, previousX, 0, n);
+        System.arraycopy(source.previousY, 0, previousY, 0, n);
+        System.arraycopy(source.vx, 0, vx, 0, n);
+        System.arraycopy(source.vy, 0, vy, 0, n);
+        System.arraycopy(source.windAcceleration, 0, windAcceleration, 0, n);
+        System.arraycopy(source.colour, 0, colour, 0, n);
+        System.arraycopy(source.armed, 0, armed, 0, n);
+        System.arraycopy(source.owner, 0, owner, 0, n);
+        if (size > n) {
+            Arrays.fill(owner, n, size, null);
+        }
+        size = n;
+    }
+
+    /**
+     * Removes every shell, keeping the arrays for reuse.
+     */
+    public void clear() {
+        Arrays.fill(owner, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return the number of shells in the air
+     */
+    public int size() {
+        return size;
+    }
+
+    public float getX(int i) {
+        return x[i];
+    }
+
+    public float getY(int i) {
+        return y[i];
+    }
+
+    public Tank getOwner(int i) {
+        return owner[i];
+    }
+
+    /**
+     * @param app the sketch to draw on
+     * @param alpha fraction of a tick elapsed since the last simulation step, used to smooth movement
+     */
+    public void display(PApplet app, float alpha) {
+        for (int i = 0; i < size; i++) {
+            app.fill(colour[i]);
+            app.ellipse(previousX[i] + (x[i] - previousX[i]) * alpha, previousY[i] + (y[i] - previousY[i]) * alpha, DIAMETER, DIAMETER);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package Tanks;
+
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Fires each turn at a random turret angle and power without aiming, from where the tank stands.
+ * A baseline to measure ComputerPlayer and level layouts against in tournaments.
+ */
+public class RandomPlayer implements Player {
+    private final Set<Character> players;
+    private final Random random;
+    private Tank planningFor;
+    private ShotPlan plan;
+
+    /**
+     * @param players identifiers of the tanks this player controls
+     * @param seed seed for the random shots
+     */
+    public RandomPlayer(Set<Character> players, long seed) {
+        this.players = players;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public boolean act(Simulation simulation, EnumSet<Action> actions) {
+        Tank tank = simulation.getCurrentTank();
+        if (simulation.isGameOver() || tank == null || !players.contains(tank.getIdentifier())) {
+            planningFor = null;
+            return false;
+        }
+        if (tank != planningFor) {
+            planningFor = tank;
+            // Turn the turret a random number of ticks either way, so the angle is one the tank can reach exactly
+            float angle = tank.getTurretAngle();
+            int turns = random.nextInt(31) - 15;
+            for (int i = 0; i < Math.abs(turns); i++) {
+                angle = turns < 0 ? Tank.turnedRight(angle) : Tank.turnedLeft(angle);
+            }
+            int power = random.nextInt(Math.min(100, tank.getHealth()) + 1);
+            plan = new ShotPlan(0, angle, power, 0);
+        }
+        plan.nextActions(tank, simulation.getTerrain(), actions);
+        if (actions.contains(Action.FIRE)) {
+            planningFor = null;
+        }
+        return true;
+    }
+}
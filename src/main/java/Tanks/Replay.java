@@ -0,0 +1,218 @@
+package Tanks;
+
+import processing.core.PApplet;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * A match read back from a file written by ReplayRecorder, played out by feeding the recorded actions to a
+ * simulation started from the recorded seed. It acts as the only player of the match it drives, and as such
+ * is used once, for one playback.
+ *
+ * Usage: {@code Replay <file> [--speed 1|10|max]}. Speeds other than max open the game window and play the
+ * match at that multiple of real time; max runs it headless as fast as possible and prints the result and
+ * how long the ticks took, for reproducing bugs and timing regressions.
+ */
+public class Replay implements Player {
+    private final String configPath;
+    private final long seed;
+    private final int width, height;
+    private final long[] ticks; // Ticks simulated before each record's step
+    private final int[] actions; // Each record's actions as a mask of Action ordinals
+    private final long endTick;
+    private int position = 0;
+
+    private Replay(String configPath, long seed, int width, int height, long[] ticks, int[] actions, long endTick) {
+        this.configPath = configPath;
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.ticks = ticks;
+        this.actions = actions;
+        this.endTick = endTick;
+    }
+
+    /**
+     * Reads a replay. A file cut short, by a crash for example, plays up to its last complete record.
+     *
+     * @param file the replay file
+     * @return the replay, ready to play from the start
+     */
+    public static Replay read(Path file) {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+            return read(stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read replay " + file, e);
+        }
+    }
+
+    static Replay read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != ReplayRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not a replay");
+        }
+        long version = readVarint(in);
+        if (version != ReplayRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported replay version " + version + ", expected " + ReplayRecorder.VERSION);
+        }
+        long seed = in.readLong();
+        byte[] path = new byte[(int) readVarint(in)];
+        in.readFully(path);
+        int width = (int) readVarint(in), height = (int) readVarint(in);
+
+        long[] ticks = new long[256];
+        int[] masks = new int[256];
+        int count = 0;
+        long tick = 0, endTick = 0;
+        int mask = 0;
+        try {
+            while (true) {
+                long header = readVarint(in);
+                if (header == 0) {
+                    endTick = tick + readVarint(in);
+                    break;
+                }
+                long nextTick = tick + (header >>> 1) - 1;
+                int nextMask = (header & 1) != 0 ? mask ^ (int) readVarint(in) : mask;
+                tick = nextTick;
+                mask = nextMask;
+                if (count == ticks.length) {
+                    ticks = Arrays.copyOf(ticks, count * 2);
+                    masks = Arrays.copyOf(masks, count * 2);
+                }
+                ticks[count] = tick;
+                masks[count++] = mask;
+                endTick = tick + 1;
+            }
+        } catch (EOFException e) {
+            // Recording stopped without closing; everything before the cut is still good
+        }
+        return new Replay(new String(path, StandardCharsets.UTF_8), seed, width, height,
+                Arrays.copyOf(ticks, count), Arrays.copyOf(masks, count), endTick);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * @return a new match in the state the recording started from
+     */
+    public Simulation newSimulation() {
+        return new Simulation(new GameConfig(configPath), width, height, seed);
+    }
+
+    /**
+     * Adds the recorded actions for the simulation's next step.
+     *
+     * @param simulation the match being replayed, which must have been started by newSimulation()
+     * @param actions the actions for this step, added to
+     * @return always true, as every action in a replayed match comes from the recording
+     */
+    @Override
+    public boolean act(Simulation simulation, EnumSet<Action> actions) {
+        if (position < ticks.length && ticks[position] == simulation.getTick()) {
+            int mask = this.actions[position++];
+            for (Action action : Action.values()) {
+                if ((mask & 1 << action.ordinal()) != 0) {
+                    actions.add(action);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param simulation the match being replayed
+     * @return true once every recorded step has been played
+     */
+    public boolean isFinished(Simulation simulation) {
+        return position >= ticks.length && (simulation.getTick() >= endTick || simulation.isGameOver());
+    }
+
+    /**
+     * Plays the whole replay as fast as possible.
+     *
+     * @return the match in its final state
+     */
+    public Simulation playHeadless() {
+        Simulation simulation = newSimulation();
+        EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+        while (!isFinished(simulation)) {
+            actions.clear();
+            act(simulation, actions);
+            simulation.step(actions);
+        }
+        return simulation;
+    }
+
+    public String getConfigPath() {
+        return configPath;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getEndTick() {
+        return endTick;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: Replay <file> [--speed 1|10|max]");
+            System.exit(2);
+        }
+        String speed = args.length >= 3 && args[1].equals("--speed") ? args[2] : "1";
+        Replay replay = read(Paths.get(args[0]));
+
+        if (speed.equals("max")) {
+            long start = System.nanoTime();
+            Simulation simulation = replay.playHeadless();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Replayed %d ticks (%.0f s of play) in %.3f s, %.0f ticks per second%n",
+                    simulation.getTick(), (double) simulation.getTick() / Simulation.TICK_RATE, seconds, simulation.getTick() / seconds);
+            System.out.println("Seed " + replay.getSeed() + (simulation.isGameOver() ? ", played to the final scoreboard" : ""));
+            for (Tank tank : simulation.getTanks()) {
+                System.out.println("Tank " + tank.getIdentifier() + " at " + tank.getX() + " with " + tank.getHealth() + " health");
+            }
+            Scoreboard scoreboard = simulation.getScoreboard();
+            for (char id = 'A'; id <= 'Z'; id++) {
+                if (scoreboard.getScore(id) != 0) {
+                    System.out.println("Player " + id + " scored " + scoreboard.getScore(id));
+                }
+            }
+        } else {
+            App app = new App();
+            app.playReplay(replay, Double.parseDouble(speed));
+            PApplet.runSketch(new String[]{"Tanks.App"}, app);
+        }
+    }
+}
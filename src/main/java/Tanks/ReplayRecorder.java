@@ -0,0 +1,149 @@
+package Tanks;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Writes a match to a replay file as it is played: the seed and config it started from, then the actions of
+ * every tick that had any. Nothing else needs storing, because the simulation always plays the same seed and
+ * actions out the same way.
+ *
+ * After a short header each tick with actions is one record: a varint holding the gap since the previous
+ * record and whether the actions changed, followed, only if they changed, by a varint of the bits that changed.
+ * A held key therefore costs one byte a tick. Records are flushed as they are written so a crash loses nothing;
+ * close() adds an end marker holding the tick the match was stopped at.
+ */
+public class ReplayRecorder implements AutoCloseable {
+    static final int MAGIC = 0x54575250; // "TWRP"
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private long lastTick = 0;
+    private int lastActions = 0;
+    private long endTick = 0;
+
+    /**
+     * Writes the header.
+     *
+     * @param output where to write the replay
+     * @param configPath the config file the match was started from
+     * @param seed the match's seed
+     * @param width width of the world in pixels
+     * @param height height of the world in pixels
+     */
+    public ReplayRecorder(OutputStream output, String configPath, long seed, int width, int height) {
+        out = new DataOutputStream(new BufferedOutputStream(output));
+        try {
+            out.writeInt(MAGIC);
+            writeVarint(out, VERSION);
+            out.writeLong(seed);
+            byte[] path = configPath.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, path.length);
+            out.write(path);
+            writeVarint(out, width);
+            writeVarint(out, height);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write replay header", e);
+        }
+    }
+
+    /**
+     * Starts recording a match into a new file.
+     *
+     * @param file the replay file to create
+     * @param configPath the config file the match was started from
+     * @param simulation the match, which is recorded from its next step
+     * @param width width of the world in pixels
+     * @param height height of the world in pixels
+     * @return the recorder, already attached to the simulation
+     */
+    public static ReplayRecorder record(Path file, String configPath, Simulation simulation, int width, int height) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            ReplayRecorder recorder = new ReplayRecorder(Files.newOutputStream(file), configPath, simulation.getSeed(), width, height);
+            simulation.setRecorder(recorder);
+            return recorder;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create replay " + file, e);
+        }
+    }
+
+    /**
+     * @param actions a set of actions
+     * @return the actions as a bit mask, one bit per Action ordinal
+     */
+    static int mask(Set<Action> actions) {
+        int mask = 0;
+        for (Action action : actions) {
+            mask |= 1 << action.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Records the actions given to one step.
+     *
+     * @param tick the number of ticks simulated before the step
+     * @param actions the step's actions, not empty
+     */
+    public void record(long tick, Set<Action> actions) {
+        int mask = mask(actions);
+        boolean changed = mask != lastActions;
+        try {
+            // The gap is never negative, and is 0 only for repeated steps while the final scoreboard is shown
+            writeVarint(out, (tick - lastTick + 1) << 1 | (changed ? 1 : 0));
+            if (changed) {
+                writeVarint(out, mask ^ lastActions);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write replay", e);
+        }
+        lastTick = tick;
+        lastActions = mask;
+        endTick = tick + 1;
+    }
+
+    /**
+     * Marks the tick the match reached, so playback runs the ticks after the last input too.
+     *
+     * @param tick the number of ticks simulated when recording stopped
+     */
+    public void setEndTick(long tick) {
+        endTick = Math.max(endTick, tick);
+    }
+
+    /**
+     * Writes the end marker and closes the file.
+     */
+    @Override
+    public void close() {
+        try {
+            writeVarint(out, 0);
+            writeVarint(out, endTick - lastTick);
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not finish replay", e);
+        }
+    }
+
+    /**
+     * Writes a non-negative number seven bits at a time, low bits first, with the top bit of each byte set when
+     * more bytes follow.
+     */
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
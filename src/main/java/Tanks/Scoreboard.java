@@ -4,18 +4,46 @@ import processing.core.PApplet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Scoreboard {
-    private PApplet parent; 
     private GameConfig config; 
     private HashMap<Character, Integer> scores; 
+    private HashMap<Character, Integer> damageDealt = new HashMap<>(); // Damage each player has done to other tanks
     private long lastTimeDisplayed = 0;  
     private int scoreIndex = 0; 
     private List<Map.Entry<Character, Integer>> entries;
+    private int[] finalColours; // The final scoreboard's lines, built with entries
+    private String[] finalTexts;
+    private String winnerText;
+    private HashMap<Character, Integer> colours = new HashMap<>(); // Resolved once per player, so "random" stays put
+    private Row[] rows = new Row[0]; // The HUD's lines, by player identifier
 
-    public Scoreboard(PApplet parent, GameConfig config) {
-        this.parent = parent;
+    /**
+     * One player's line in the HUD scoreboard, with its colour resolved and its text kept until the score changes.
+     */
+    static final class Row {
+        private final char playerID;
+        private final int colour;
+        private final HudText text;
+
+        private Row(char playerID, int colour) {
+            this.playerID = playerID;
+            this.colour = colour;
+            this.text = new HudText("Player " + playerID + ": ");
+        }
+
+        char getPlayerID() {
+            return playerID;
+        }
+
+        int getColour() {
+            return colour;
+        }
+    }
+
+    public Scoreboard(GameConfig config) {
         this.config = config;
         this.scores = new HashMap<>();
         this.entries = null;
@@ -39,10 +67,30 @@ public class Scoreboard {
         scores.put(tankId, scores.getOrDefault(tankId, 0) + initialScore);  // Set initial score if not present or update existing score
     }
 
+    /**
+     * Credits a player for damage done to another tank, which scores a point per point of damage.
+     *
+     * @param attackerId The identifier of the tank that did the damage.
+     * @param damage The health the other tank lost.
+     */
+    public void recordDamage(char attackerId, int damage) {
+        updateScore(attackerId, damage);
+        damageDealt.put(attackerId, damageDealt.getOrDefault(attackerId, 0) + damage);
+    }
+
+    /**
+     * @param playerID The character identifier of the player.
+     * @return The total damage the player has done to other tanks, unaffected by purchases.
+     */
+    public int getDamageDealt(char playerID) {
+        return damageDealt.getOrDefault(playerID, 0);
+    }
+
     public void resetScores() {
         for (Map.Entry<Character, Integer> entry : scores.entrySet()) {
             entry.setValue(0); // Reset each score to zero
         }
+        damageDealt.clear();
     }
 
     public void registerTank(char tankId) {
@@ -51,6 +99,55 @@ public class Scoreboard {
         }
     }
 
+    /**
+     * Registers a tank and shows its player in the colour the tank was given.
+     */
+    public void registerTank(char tankId, int colour) {
+        registerTank(tankId);
+        Integer previous = colours.put(tankId, colour);
+        if (previous == null || previous != colour) {
+            rows = new Row[0]; // Rebuilt with the new colour on the next draw
+        }
+    }
+
+    /**
+     * @return the player's colour, taken from the config the first time it is needed if no tank has given one
+     */
+    private int colourOf(char playerID) {
+        Integer colour = colours.get(playerID);
+        if (colour == null) {
+            colour = config.getPlayerColour(playerID);
+            colours.put(playerID, colour);
+        }
+        return colour;
+    }
+
+    /**
+     * @return every player's HUD line in order of identifier, rebuilt only when players come or go
+     */
+    Row[] getRows() {
+        if (rows.length != scores.size()) {
+            char[] ids = new char[scores.size()];
+            int i = 0;
+            for (char id : scores.keySet()) {
+                ids[i++] = id;
+            }
+            Arrays.sort(ids);
+            rows = new Row[ids.length];
+            for (i = 0; i < ids.length; i++) {
+                rows[i] = new Row(ids[i], colourOf(ids[i]));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the row's "Player X: score" text, built again only if the score changed since it was last asked for
+     */
+    String getText(Row row) {
+        return row.text.of(getScore(row.playerID));
+    }
+
     /**
      * Retrieves the current score of the specified player.
      *
@@ -61,6 +158,38 @@ public class Scoreboard {
         return scores.getOrDefault(playerID, 0);
     }
 
+    /**
+     * Copies every player's score and damage dealt into a snapshot.
+     */
+    void saveTo(GameSnapshot snapshot) {
+        snapshot.ensurePlayers(scores.size());
+        int i = 0;
+        for (Map.Entry<Character, Integer> entry : scores.entrySet()) {
+            snapshot.playerIds[i] = entry.getKey();
+            snapshot.scores[i] = entry.getValue();
+            snapshot.damageDealt[i++] = damageDealt.getOrDefault(entry.getKey(), 0);
+        }
+        snapshot.players = i;
+    }
+
+    /**
+     * Puts back the scores saved by saveTo.
+     */
+    void restoreFrom(GameSnapshot snapshot) {
+        if (scores.size() != snapshot.players) {
+            scores.clear(); // Players came or went since; otherwise entries are updated in place for display
+            entries = null;
+            rows = new Row[0];
+        }
+        damageDealt.clear();
+        for (int i = 0; i < snapshot.players; i++) {
+            scores.put(snapshot.playerIds[i], snapshot.scores[i]);
+            if (snapshot.damageDealt[i] != 0) {
+                damageDealt.put(snapshot.playerIds[i], snapshot.damageDealt[i]);
+            }
+        }
+    }
+
     public void resetDisplayState() {
         scoreIndex = 0;
         lastTimeDisplayed = 0;
@@ -70,7 +199,7 @@ public class Scoreboard {
      * Displays the  scores of all playerson the game window.
      * Scores are sorted and displayed in ascending order by player identifier.
      */
-    public void display() {
+    public void display(PApplet parent) {
         int margin = 20; 
         int headingHeight = 30; 
         int rowHeight = 30; 
@@ -89,37 +218,50 @@ public class Scoreboard {
         parent.textSize(16); 
         parent.fill(0);
         parent.noStroke(); 
-        parent.textAlign(parent.LEFT, parent.CENTER);
+        parent.textAlign(PApplet.LEFT, PApplet.CENTER);
         parent.text("Scores", scoreboardX + margin, scoreboardY + headingHeight / 2);
     
         parent.textSize(14); // Text size for player scores
         int y = scoreboardY + headingHeight;
     
-        // Use a sorted list of entries to maintain consistent order
-        if (entries == null || entries.isEmpty()) {
-            entries = new ArrayList<>(scores.entrySet());
-            entries.sort(Map.Entry.comparingByKey()); // Sort by player ID
-        }
-        
-    
         // Display scores in a consistent order
-        for (Map.Entry<Character, Integer> entry : entries) {
-            char playerID = entry.getKey();
-            int score = entry.getValue();
-            int Colour = config.getPlayerColour(playerID); // Get player Colour
-            parent.fill(Colour);
-            parent.text("Player " + playerID + ": " + score, scoreboardX + margin, y + rowHeight / 2);
+        for (Row row : getRows()) {
+            parent.fill(row.colour);
+            parent.text(getText(row), scoreboardX + margin, y + rowHeight / 2);
             y += rowHeight;
         }
     }
     
     
 
+    /**
+     * Ranks the players by score and builds the final scoreboard's lines, once for as long as it is shown.
+     */
+    void rankFinalScores() {
+        entries = new ArrayList<>(scores.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        finalColours = new int[entries.size()];
+        finalTexts = new String[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            char playerID = entries.get(i).getKey();
+            finalColours[i] = colourOf(playerID);
+            finalTexts[i] = "Player " + playerID + ": " + entries.get(i).getValue();
+        }
+        winnerText = entries.isEmpty() ? null : "Winner: Player " + entries.get(0).getKey();
+    }
+
+    /**
+     * @return the final scoreboard's lines, best first, as last ranked by rankFinalScores
+     */
+    String[] getFinalScoreTexts() {
+        return finalTexts;
+    }
+
     /**
      * Displays the final scores at the end of the game, including the winner.
      * Sorts the scores in descending order and displays them after a delay.
      */
-    public void displayFinalScoreboard() {
+    public void displayFinalScoreboard(PApplet parent) {
         int width = 300;
         int height = 200;
         int startX = (parent.width - width) / 2;
@@ -135,19 +277,17 @@ public class Scoreboard {
     
         // Sort and initialize entries if necessary
         if (entries == null || entries.isEmpty() || lastTimeDisplayed == 0) {
-            entries = new ArrayList<>(scores.entrySet());
-            entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+            rankFinalScores();
             lastTimeDisplayed = parent.millis(); // Reset last displayed time to now
             scoreIndex = 0; // Reset scoreIndex
         }
     
         //  Display the winner
         if (!entries.isEmpty()) {
-            Map.Entry<Character, Integer> winner = entries.get(0);
             parent.textAlign(PApplet.CENTER, PApplet.CENTER);
             parent.textSize(24);
-            parent.fill(config.getPlayerColour(winner.getKey())); // Use the winner's Colour
-            parent.text("Winner: Player " + winner.getKey(), startX + width / 2, startY - 50);
+            parent.fill(finalColours[0]); // Use the winner's Colour
+            parent.text(winnerText, startX + width / 2, startY - 50);
         }
     
         // Display scores with a delay
@@ -156,10 +296,9 @@ public class Scoreboard {
         parent.text("Final Scores", startX + width / 2, headerPosition - 30);
     
         int yPos = headerPosition; // Position for scores starting just below the header
-        for (int i = 0; i < scoreIndex && i < entries.size(); i++) {
-            Map.Entry<Character, Integer> entry = entries.get(i);
-            parent.fill(config.getPlayerColour(entry.getKey()), 255);
-            parent.text("Player " + entry.getKey() + ": " + entry.getValue(), startX + width / 2, yPos);
+        for (int i = 0; i < scoreIndex && i < finalTexts.length; i++) {
+            parent.fill(finalColours[i], 255);
+            parent.text(finalTexts[i], startX + width / 2, yPos);
             yPos += lineHeight;
         }
     
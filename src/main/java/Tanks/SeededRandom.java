@@ -0,0 +1,45 @@
+package Tanks;
+
+import java.util.Random;
+
+/**
+ * A java.util.Random whose state can be read and set, so a snapshot of a match can include where its random
+ * sequence had got to. It runs the same generator as java.util.Random, so a seed gives the same numbers either
+ * way and replays recorded before snapshots existed still play the same.
+ */
+public class SeededRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL, ADDEND = 0xBL, MASK = (1L << 48) - 1;
+
+    private long state; // Set by setSeed, which Random's constructor calls before field initialisers would run
+
+    public SeededRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return the generator's position in its sequence
+     */
+    long getState() {
+        return state;
+    }
+
+    /**
+     * @param state a position returned by getState(), to continue the sequence from
+     */
+    void setState(long state) {
+        this.state = state;
+    }
+}
@@ -0,0 +1,77 @@
+package Tanks;
+
+import java.util.EnumSet;
+
+/**
+ * A turn chosen by a ComputerPlayer: how far to drive, where to point the turret and how much power to use.
+ * The plan is carried out through the same actions a player's keys produce, one tick at a time, so a computer
+ * turn plays out on screen like a human one and replays like one.
+ */
+public class ShotPlan {
+    private static final int MAX_TICKS = 10 * Simulation.TICK_RATE; // Fire regardless after ten seconds
+
+    private int moveTicks; // Ticks of driving still to do, negative to the left
+    private final float turretAngle;
+    private final int power;
+    private final float score;
+    private int ticks = 0;
+
+    /**
+     * @param moveTicks ticks of driving before firing, negative to the left
+     * @param turretAngle turret angle to fire at, in the tank's own radians
+     * @param power power to fire with
+     * @param score how good the search judged the shot
+     */
+    ShotPlan(int moveTicks, float turretAngle, int power, float score) {
+        this.moveTicks = moveTicks;
+        this.turretAngle = turretAngle;
+        this.power = power;
+        this.score = score;
+    }
+
+    public float getTurretAngle() {
+        return turretAngle;
+    }
+
+    public int getPower() {
+        return power;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * Adds the actions that bring the tank one tick closer to the plan, or FIRE once it matches the plan and
+     * has settled on the ground.
+     *
+     * @param tank the tank carrying out the plan
+     * @param terrain the terrain the tank stands on
+     * @param actions the actions for this tick, added to
+     */
+    public void nextActions(Tank tank, Terrain terrain, EnumSet<Action> actions) {
+        ticks++;
+        if (moveTicks > 0) {
+            actions.add(Action.MOVE_RIGHT);
+            moveTicks--;
+        } else if (moveTicks < 0) {
+            actions.add(Action.MOVE_LEFT);
+            moveTicks++;
+        }
+        if (tank.getTurretAngle() < turretAngle) {
+            actions.add(Action.TURRET_LEFT);
+        } else if (tank.getTurretAngle() > turretAngle) {
+            actions.add(Action.TURRET_RIGHT);
+        }
+        if (tank.getPower() < power) {
+            actions.add(Action.POWER_UP);
+        } else if (tank.getPower() > power) {
+            actions.add(Action.POWER_DOWN);
+        }
+
+        boolean settled = tank.getY() >= terrain.getHeightAtX(tank.getX());
+        if ((actions.isEmpty() && settled) || ticks >= MAX_TICKS) {
+            actions.add(Action.FIRE);
+        }
+    }
+}
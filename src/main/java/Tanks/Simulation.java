@@ -0,0 +1,644 @@
+package Tanks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Headless game engine. Owns the terrain, tanks, trees, explosions, wind and scoreboard and
+ * advances them one tick at a time without touching a PApplet, so a match can be stepped as
+ * fast as the CPU allows. App only renders the state held here and feeds it player actions.
+ */
+public class Simulation {
+
+    public static final int TICK_RATE = 30; // Simulation ticks per second of game time
+    private static final int LEVEL_TRANSITION_DELAY = TICK_RATE; // One second between levels, in ticks
+
+    private GameConfig config;
+    private int width, height;
+    private Terrain terrain;
+    private Wind wind;
+    private Scoreboard scoreboard;
+    private ArrayList<Tank> tanks;
+    private TankIndex tankIndex; // The same tanks, bucketed by x for explosion and projectile hit tests
+    private int currentTankIndex = 0;
+    private ArrayList<Tree> trees;
+    private int treeHeight; // How tall the level's trees are drawn
+    private ArrayList<Explosion> explosions;
+    private ProjectileSystem projectiles = new ProjectileSystem();
+    private boolean waitingForNextLevel = false;
+    private long levelTransitionStartTick;
+    private Future<Level> nextLevel; // Being prepared in the background while the transition delay runs
+    private boolean gameOver = false;
+    private long tick = 0;
+    private final long seed;
+    private final SeededRandom random; // The only source of randomness in a match: wind, tree placement and random colours
+    private ReplayRecorder recorder;
+    private FrameProfiler profiler = FrameProfiler.DISABLED;
+
+    /**
+     * Creates a match on the first level of the given configuration, with a fresh random seed.
+     * @param config the game configuration to play through
+     * @param width width of the world in pixels
+     * @param height height of the world in pixels
+     */
+    public Simulation(GameConfig config, int width, int height) {
+        this(config, width, height, new Random().nextLong());
+    }
+
+    /**
+     * Creates a match on the first level of the given configuration. Two matches with the same configuration
+     * and seed that are given the same actions on the same ticks play out identically.
+     * @param config the game configuration to play through
+     * @param width width of the world in pixels
+     * @param height height of the world in pixels
+     * @param seed seed for every random choice the match makes
+     */
+    public Simulation(GameConfig config, int width, int height, long seed) {
+        this.config = config;
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.random = new SeededRandom(seed);
+        initializeEnvironment(); // Setup wind, scoreboard, etc. before initializing game objects
+        startLevel(Level.load(config, config.getCurrentLevelIndex(), width, height)); // Setup terrain, tanks and trees
+        scoreboard.initializeScores(tanks); // Initialize scores after tanks are fully created
+        explosions = new ArrayList<>();
+    }
+
+    /**
+     * Moves the trees standing on changed terrain down onto the new surface.
+     * @param firstColumn the first pixel column that changed
+     * @param lastColumn the last pixel column that changed
+     */
+    private void settleTrees(int firstColumn, int lastColumn) {
+        profiler.begin(FrameProfiler.Phase.TREE_SETTLE);
+        for (Tree tree : trees) {
+            int column = (int) tree.getX();
+            if (column >= firstColumn && column <= lastColumn) {
+                tree.updatePosition();
+            }
+        }
+        profiler.end(FrameProfiler.Phase.TREE_SETTLE);
+    }
+
+    /**
+     * Swaps in a prepared level: its terrain, and new tanks and trees at its spawn points.
+     * @param level the level to play
+     */
+    private void startLevel(Level level) {
+        GameEvents.LevelStartEvent event = new GameEvents.LevelStartEvent();
+        event.begin();
+        terrain = level.getTerrain();
+        terrain.addListener(this::settleTrees);
+        tanks = new ArrayList<>();
+        projectiles.clear();
+        tankIndex = new TankIndex(terrain.getWidth());
+        trees = new ArrayList<>();
+        treeHeight = level.getTreeHeight();
+
+        for (int i = 0; i < level.getTankCount(); i++) {
+            char ch = level.getTankIdentifier(i);
+            int tankColour = config.getPlayerColour(ch, random);
+            float tankX = level.getTankX(i);
+            Tank tank = new Tank(tankX, terrain.getHeightAtX(tankX), tankColour, terrain, ch, scoreboard);
+            tanks.add(tank);
+            tankIndex.add(tank);
+            scoreboard.registerTank(tank.getIdentifier(), tankColour);
+            scoreboard.updateScore(ch, 0);  // Initialize tank's score in scoreboard when tank is created
+        }
+        for (int i = 0; i < level.getTreeCount(); i++) {
+            trees.add(new Tree(level.getTreeX(i), terrain, random));
+        }
+
+        //lambda function tanks to be sorted by identifier
+        tanks.sort((tank1, tank2) -> Character.compare(tank1.getIdentifier(), tank2.getIdentifier()));
+
+        if (!tanks.isEmpty()) {
+            tanks.get(0).setActive(true); // Explicitly set the first tank as active
+            currentTankIndex = 0; // Ensure the index is set to the start
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.level = level.getLevelIndex();
+            event.tick = tick;
+            event.tanks = tanks.size();
+            event.trees = trees.size();
+            event.commit();
+        }
+    }
+
+    private void initializeEnvironment() {
+        wind = new Wind(random);
+        scoreboard = new Scoreboard(config);
+    }
+
+    /**
+     * Advances the match by one tick with no player input.
+     */
+    public void step() {
+        step(Collections.emptySet());
+    }
+
+    /**
+     * Advances the match by one fixed-length tick: applies this tick's player actions, settles
+     * trees and tanks on the terrain, moves projectiles, grows explosions, removes destroyed tanks
+     * and handles the end of the level. The same actions on the same ticks always produce the
+     * same match, however fast or unevenly the ticks are run.
+     * Only a restart is accepted once the final scoreboard has been reached.
+     *
+     * @param actions the actions to apply this tick, applied in Action declaration order
+     */
+    public void step(Set<Action> actions) {
+        if (recorder != null && !actions.isEmpty()) {
+            recorder.record(tick, actions);
+        }
+        if (gameOver) {
+            if (actions.contains(Action.RESTART)) {
+                apply(Action.RESTART);
+            }
+            return;
+        }
+        GameEvents.TickEvent event = new GameEvents.TickEvent();
+        event.begin();
+        tick++;
+
+        for (Tank tank : tanks) {
+            tank.savePreviousPosition();
+        }
+        profiler.begin(FrameProfiler.Phase.ACTIONS);
+        for (Action action : Action.values()) {
+            if (actions.contains(action)) {
+                apply(action);
+            }
+        }
+        profiler.end(FrameProfiler.Phase.ACTIONS);
+
+        removeOffscreenTrees();
+
+        profiler.begin(FrameProfiler.Phase.TANK_SETTLE);
+        for (Tank tank : tanks) {
+            tank.calibratePosition();
+        }
+
+        for (Tank tank : tanks) {
+            tank.updatePosition(false);
+        }
+        profiler.end(FrameProfiler.Phase.TANK_SETTLE);
+        profiler.begin(FrameProfiler.Phase.PROJECTILES);
+        projectiles.update(explosions, terrain, tankIndex);
+        profiler.end(FrameProfiler.Phase.PROJECTILES);
+
+        profiler.begin(FrameProfiler.Phase.EXPLOSIONS);
+        for (Explosion explosion : explosions) {
+            explosion.update();
+        }
+        explosions.removeIf(explosion -> !explosion.isActive());
+
+        updateExplosionsAndTanks();
+        profiler.end(FrameProfiler.Phase.EXPLOSIONS);
+        profiler.begin(FrameProfiler.Phase.CLEANUP);
+        removeOffscreenTanks();
+        removeInactiveTanks();
+        checkEndOfLevel();
+        profiler.end(FrameProfiler.Phase.CLEANUP);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.tanks = tanks.size();
+            event.shells = projectiles.size();
+            event.explosions = explosions.size();
+            event.actions = actions.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Applies a player's command to the tank whose turn it is, immediately and outside of any tick.
+     * Live play should pass actions to step(Set) instead so they land on a tick boundary.
+     * @param action the command to apply
+     */
+    public void apply(Action action) {
+        if (tanks.isEmpty() || currentTankIndex >= tanks.size()) {
+            return;
+        }
+        Tank currentTank = tanks.get(currentTankIndex);
+
+        switch (action) {
+            case TURRET_LEFT:
+                currentTank.rotateTurretLeft();
+                break;
+            case TURRET_RIGHT:
+                currentTank.rotateTurretRight();
+                break;
+            case MOVE_LEFT:
+                currentTank.moveLeft();
+                tankIndex.update(currentTank);
+                break;
+            case MOVE_RIGHT:
+                currentTank.moveRight();
+                tankIndex.update(currentTank);
+                break;
+            case FIRE:
+                currentTank.fire(wind, projectiles);
+                nextTurn();
+                break;
+            case POWER_UP:
+                currentTank.increasePower();
+                break;
+            case POWER_DOWN:
+                currentTank.decreasePower();
+                break;
+            case REPAIR:
+                currentTank.repair();
+                break;
+            case REFUEL:
+                currentTank.refuel();
+                break;
+            case SHIELD:
+                currentTank.activateShield();
+                break;
+            case PARACHUTE:
+                currentTank.purchaseParachute();
+                break;
+            case RESTART:
+                if (gameOver) {
+                    restartGame();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Captures the whole state of the match.
+     * @return a new snapshot
+     */
+    public GameSnapshot snapshot() {
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Captures the whole state of the match into an existing snapshot, reusing its arrays.
+     * @param snapshot the snapshot to overwrite
+     */
+    public void snapshot(GameSnapshot snapshot) {
+        snapshot.tick = tick;
+        snapshot.levelIndex = config.getCurrentLevelIndex();
+        snapshot.currentTankIndex = currentTankIndex;
+        snapshot.waitingForNextLevel = waitingForNextLevel;
+        snapshot.gameOver = gameOver;
+        snapshot.levelTransitionStartTick = levelTransitionStartTick;
+        snapshot.randomState = random.getState();
+        snapshot.wind = wind;
+        snapshot.windForce = wind.getWindForce();
+
+        snapshot.terrain = terrain;
+        snapshot.tankIndex = tankIndex;
+        if (snapshot.heights.length < terrain.getWidth()) {
+            snapshot.heights = new float[terrain.getWidth()];
+        }
+        terrain.saveHeights(snapshot.heights);
+        GameSnapshot.copy(trees, snapshot.trees);
+        snapshot.treeHeight = treeHeight;
+
+        GameSnapshot.copy(tanks, snapshot.tanks);
+        snapshot.ensureTanks(tanks.size());
+        for (int i = 0; i < tanks.size(); i++) {
+            tanks.get(i).saveTo(snapshot, i);
+        }
+
+        snapshot.projectiles.copyFrom(projectiles);
+        GameSnapshot.copy(explosions, snapshot.explosions);
+        snapshot.ensureExplosions(explosions.size());
+        for (int i = 0; i < explosions.size(); i++) {
+            snapshot.explosionRadii[i] = explosions.get(i).getRadius();
+        }
+        scoreboard.saveTo(snapshot);
+    }
+
+    /**
+     * Puts the match back exactly as it was when the snapshot was taken. Stepping on from there with the same
+     * actions plays out the same as it did the first time.
+     * @param snapshot a snapshot taken of this match
+     */
+    public void restore(GameSnapshot snapshot) {
+        int pendingLevelIndex = getPendingLevelIndex();
+        tick = snapshot.tick;
+        config.setCurrentLevelIndex(snapshot.levelIndex);
+        currentTankIndex = snapshot.currentTankIndex;
+        waitingForNextLevel = snapshot.waitingForNextLevel;
+        gameOver = snapshot.gameOver;
+        levelTransitionStartTick = snapshot.levelTransitionStartTick;
+        // A prepared level is played on once it starts, so only a load nothing has claimed yet can be kept
+        if (!waitingForNextLevel || !config.hasNextLevel()) {
+            nextLevel = null;
+        } else if (pendingLevelIndex != snapshot.levelIndex + 1) {
+            nextLevel = LevelLoader.prepare(config, snapshot.levelIndex + 1, width, height);
+        }
+        random.setState(snapshot.randomState);
+        wind = snapshot.wind;
+        wind.setWindForce(snapshot.windForce);
+
+        terrain = snapshot.terrain;
+        tankIndex = snapshot.tankIndex;
+        GameSnapshot.copy(snapshot.trees, trees);
+        treeHeight = snapshot.treeHeight;
+        terrain.restoreHeights(snapshot.heights); // Settles the trees onto the restored surface
+
+        GameSnapshot.copy(snapshot.tanks, tanks);
+        for (int i = 0; i < tanks.size(); i++) {
+            Tank tank = tanks.get(i);
+            tank.restoreFrom(snapshot, i);
+            if (tank.indexBucket < 0) {
+                tankIndex.add(tank); // Destroyed since the snapshot
+            } else {
+                tankIndex.update(tank);
+            }
+        }
+
+        projectiles.copyFrom(snapshot.projectiles);
+        GameSnapshot.copy(snapshot.explosions, explosions);
+        for (int i = 0; i < explosions.size(); i++) {
+            explosions.get(i).restoreRadius(snapshot.explosionRadii[i]);
+        }
+        scoreboard.restoreFrom(snapshot);
+    }
+
+    /**
+     * Goes to the next tanks turn
+     */
+    public void nextTurn() {
+        GameEvents.TurnChangeEvent event = new GameEvents.TurnChangeEvent();
+        event.begin();
+        char previousTank = 0;
+        if (!tanks.isEmpty() && currentTankIndex < tanks.size()) {
+            tanks.get(currentTankIndex).setActive(false);
+            previousTank = tanks.get(currentTankIndex).getIdentifier();
+        }
+
+        // Increment to the next tank
+        currentTankIndex = (currentTankIndex + 1) % tanks.size();
+        tanks.get(currentTankIndex).setActive(true);
+        tanks.get(currentTankIndex).startTurn(tick);  // Pass the current tick
+
+        // Update the wind or any other environmental effects
+        if (wind != null) {
+            wind.updateWind();
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.previousTank = previousTank;
+            event.nextTank = tanks.get(currentTankIndex).getIdentifier();
+            event.tanks = tanks.size();
+            event.wind = wind == null ? 0 : wind.getWindForce();
+            event.commit();
+        }
+    }
+
+    /**
+     * Restarts the game by reloading the first level
+     * Reinitalises most game objects and resets scoreboard and wind
+     */
+    private void restartGame() {
+        config.resetGame(); // Load the first level configuration
+
+        startLevel(Level.load(config, 0, width, height)); // Reinitialize terrain, tanks and trees based on the first level
+        scoreboard.resetScores(); // Explicitly reset the scoreboard scores
+        scoreboard.initializeScores(tanks); // (Optional) Reinitialize scores based on the new game state
+        scoreboard.resetDisplayState();
+
+        wind = new Wind(random); // Reinitialize the wind
+        gameOver = false; // Ensure final scoreboard is not displayed unless game ends
+        waitingForNextLevel = false; // Reset waiting for next level flag
+        nextLevel = null;
+        currentTankIndex = 0; // Start from the first tank again
+        tanks.get(currentTankIndex).setActive(true); // Ensure the first tank is active
+    }
+
+    /**
+     * Checks if config has another level. If not the game is over and the final scoreboard is shown.
+     * As soon as the level is decided the next one starts loading in the background, and it is swapped in
+     * once the transition delay has passed.
+     */
+    private void checkEndOfLevel() {
+        // Check if there's only one tank left or if all tanks are inactive
+        if (tanks.size() == 1 && !waitingForNextLevel) {
+            waitingForNextLevel = true;
+            levelTransitionStartTick = tick;
+            // Check if there are more levels to play
+            if (!config.hasNextLevel()) {
+                gameOver = true; // Only display final scoreboard if no more levels
+            } else {
+                nextLevel = LevelLoader.prepare(config, config.getCurrentLevelIndex() + 1, width, height);
+            }
+        } else if (waitingForNextLevel && tick - levelTransitionStartTick > LEVEL_TRANSITION_DELAY) {
+            waitingForNextLevel = false;
+            if (nextLevel != null) {
+                Level level = awaitNextLevel();
+                config.loadNextLevel(); // Load the next level configuration
+                startLevel(level);      // Swap in the new terrain, tanks and trees
+            }
+        }
+    }
+
+    /**
+     * @return the next level, waiting for it only if a whole second was not enough to prepare it
+     */
+    private Level awaitNextLevel() {
+        try {
+            return nextLevel.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the next level", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not load the next level", e.getCause());
+        } finally {
+            nextLevel = null;
+        }
+    }
+
+    /**
+     * Updates explosions and tanks' positions on the terrain.
+     */
+    private void updateExplosionsAndTanks() {
+        Iterator<Explosion> explosionIterator = explosions.iterator();
+        while (explosionIterator.hasNext()) {
+            Explosion explosion = explosionIterator.next();
+            explosion.update(); // Update explosion
+            if (!explosion.isActive()) {
+                explosionIterator.remove(); // Remove inactive explosions
+            }
+        }
+
+        for (Tank tank : tanks) {
+            float terrainHeight = terrain.getHeightAtX(tank.getX());
+            if (tank.getY() > terrainHeight) {
+                if (tank.getY() > height) { // Check if the tank is below the screen
+                    tank.setActive(false);
+                }
+            } else {
+                tank.recalibratePosition(); // Adjust tank position based on terrain
+            }
+        }
+    }
+
+    /**
+     * Removes tanks that fall through the terrain
+     */
+    private void removeOffscreenTanks() {
+        tanks.removeIf(tank -> {
+            if (tank.getY() >= height) { // Check if the tank is below the screen
+                tankIndex.remove(tank);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Removes tanks that are no longer active, either from falling through the map
+     * or having < 0 health.
+     */
+    private void removeInactiveTanks() {
+        Iterator<Tank> iterator = tanks.iterator();
+        while (iterator.hasNext()) {
+            Tank tank = iterator.next();
+            if (!tank.isActive() && tank.getHealth() <= 0) {
+                iterator.remove();  // Remove the tank from the list
+                tankIndex.remove(tank);
+            }
+        }
+
+        // Ensure the currentTankIndex is still valid
+        if (currentTankIndex >= tanks.size()) {
+            currentTankIndex = 0;  // Reset to the first tank if the previous active tank was the last one
+        }
+        // Check if there are any active tanks left
+        if (!tanks.isEmpty() && !tanks.get(currentTankIndex).isActive()) {
+            nextTurn(); // Move to the next available tank
+        }
+    }
+
+    /**
+     * Removes trees that fall below the screen, by the rule the game has always had: a tree goes once the centre
+     * of its image, half the image's height above its base, is within the image's whole height of the bottom.
+     */
+    private void removeOffscreenTrees() {
+        trees.removeIf(tree -> tree.getY() - treeHeight / 2 + treeHeight >= height);
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    public Wind getWind() {
+        return wind;
+    }
+
+    public Scoreboard getScoreboard() {
+        return scoreboard;
+    }
+
+    public ArrayList<Tank> getTanks() {
+        return tanks;
+    }
+
+    public ArrayList<Tree> getTrees() {
+        return trees;
+    }
+
+    public ArrayList<Explosion> getExplosions() {
+        return explosions;
+    }
+
+    public ProjectileSystem getProjectiles() {
+        return projectiles;
+    }
+
+    /**
+     * @return the tank whose turn it is, or null if there are no tanks left
+     */
+    public Tank getCurrentTank() {
+        if (currentTankIndex >= 0 && currentTankIndex < tanks.size()) {
+            return tanks.get(currentTankIndex);
+        }
+        return null;
+    }
+
+    /**
+     * @return index of the level being loaded in the background, or -1 if no level change is coming
+     */
+    public int getPendingLevelIndex() {
+        return nextLevel != null ? config.getCurrentLevelIndex() + 1 : -1;
+    }
+
+    /**
+     * @return true if nothing in the match is moving and no level change is on its way, so stepping with no
+     *         actions would change nothing but the tick count
+     */
+    public boolean isSettled() {
+        if (gameOver) {
+            return true;
+        }
+        if (waitingForNextLevel || projectiles.size() > 0 || !explosions.isEmpty()) {
+            return false;
+        }
+        for (Tank tank : tanks) {
+            if (tank.getY() < terrain.getHeightAtX(tank.getX())) {
+                return false; // Still falling
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true once the last level has finished and only the final scoreboard remains
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * @return the seed the match's randomness was drawn from
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Records the actions of every later step, so the match can be replayed from its seed.
+     * @param recorder where to record, or null to stop recording
+     */
+    public void setRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Times the phases of every later step.
+     * @param profiler the profiler to record into
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * @return number of ticks simulated so far
+     */
+    public long getTick() {
+        return tick;
+    }
+}
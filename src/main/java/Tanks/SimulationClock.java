@@ -0,0 +1,56 @@
+package Tanks;
+
+/**
+ * Fixed-timestep clock that turns real elapsed time into whole simulation ticks.
+ * Leftover time is kept in an accumulator so the simulation always advances in steps of
+ * exactly 1 / Simulation.TICK_RATE seconds, whatever the render frame rate is. The fraction
+ * of a tick still waiting in the accumulator is exposed so rendering can interpolate.
+ */
+public class SimulationClock {
+    private static final double TICK_MILLIS = 1000.0 / Simulation.TICK_RATE;
+    private static final int MAX_TICKS_PER_FRAME = 5; // Stops a long hitch from snowballing into more hitches
+
+    private final double speed;
+    private double accumulator = 0;
+    private long lastMillis = -1;
+
+    public SimulationClock() {
+        this(1);
+    }
+
+    /**
+     * @param speed how many times faster than real time the simulation runs, as when watching a replay at 10x
+     */
+    public SimulationClock(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Adds the time since the previous call to the accumulator.
+     *
+     * @param nowMillis the current time in milliseconds
+     * @return how many simulation ticks should be run before the next frame is drawn
+     */
+    public int advance(long nowMillis) {
+        if (lastMillis < 0) {
+            lastMillis = nowMillis;
+        }
+        accumulator += (nowMillis - lastMillis) * speed;
+        lastMillis = nowMillis;
+
+        int ticks = (int) (accumulator / TICK_MILLIS);
+        accumulator -= ticks * TICK_MILLIS;
+        int maxTicks = (int) Math.ceil(MAX_TICKS_PER_FRAME * speed);
+        if (ticks > maxTicks) {
+            ticks = maxTicks; // Drop the backlog rather than trying to catch up all at once
+        }
+        return ticks;
+    }
+
+    /**
+     * @return how far the clock is between the last tick and the next one, from 0 to 1
+     */
+    public float getAlpha() {
+        return (float) (accumulator / TICK_MILLIS);
+    }
+}
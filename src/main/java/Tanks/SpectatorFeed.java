@@ -0,0 +1,404 @@
+package Tanks;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A binary stream of a match for spectators: a keyframe holding the whole visible state, then a delta for each
+ * tick on which something changed. Deltas carry only the terrain columns that changed, the tanks that moved or
+ * changed, tanks that were destroyed, scores that changed, and the shells and explosions while there are any,
+ * so a quiet tick costs nothing and a busy one a few dozen bytes.
+ *
+ * Each frame is encoded once and written into a ring buffer shared by every subscriber. Subscribers each keep
+ * their own position in the ring and write straight from it to their socket, so adding a viewer adds no encoding
+ * and no copying. A subscriber that falls more than half the ring behind skips ahead to the latest keyframe, which
+ * the feed writes at least every quarter of the ring.
+ *
+ * Every frame starts with its length in bytes, including the length itself, as an int, then a type byte and the
+ * tick as an int. Numbers are big-endian; positions are whole pixels as shorts; counts of tanks and scores are
+ * unsigned bytes, as there are at most 128 letters. SpectatorState reads the stream.
+ * <ul>
+ *     <li>Keyframe (type 1): world width and height and terrain columns as shorts; wind, current tank and flags as
+ *     bytes; a tank count byte then, per tank, its letter byte, x, y, health, power and fuel as shorts, colour and
+ *     score as ints; every column's surface y as a short; a tree count short then each tree's x and y; a shell
+ *     count short then each shell's x and y; an explosion count short then each explosion's x, y and radius.</li>
+ *     <li>Delta (type 2): a byte of the sections that follow, in bit order. ENVIRONMENT: wind, current tank and
+ *     flags. TANKS: a count then letter, x, y, health, power and fuel for each changed tank. REMOVED: a count then
+ *     the letters of destroyed tanks. TERRAIN: first and last column then each column's surface y. SCORES: a count
+ *     then letter and int score. SHELLS and EXPLOSIONS: as in a keyframe, with a count of zero when the last ones
+ *     are gone.</li>
+ * </ul>
+ */
+public class SpectatorFeed {
+    static final byte KEYFRAME = 1, DELTA = 2;
+    static final int ENVIRONMENT = 1, TANKS = 2, REMOVED = 4, TERRAIN = 8, SCORES = 16, SHELLS = 32, EXPLOSIONS = 64;
+    static final int GAME_OVER = 1; // Flag bit
+
+    private final Simulation simulation;
+    private final ByteBuffer ring; // Direct, so sockets write from it without an intermediate copy
+    private final ByteBuffer ringWriter;
+    private final int capacity;
+    private volatile long published = 0; // Bytes ever written; the ring holds the last capacity of them
+    private volatile long writeLimit = 0; // End of the frame being copied in, raised before any of it is copied
+    private volatile long lastKeyframe = 0; // Where the latest keyframe starts
+
+    // What subscribers were last sent, for working out the next delta. Only touched by publish()
+    private ByteBuffer frame = ByteBuffer.allocate(4096);
+    private Terrain terrain;
+    private final TerrainListener terrainListener = this::terrainChanged;
+    private int dirtyFirstColumn = Integer.MAX_VALUE, dirtyLastColumn = -1;
+    private int wind, current, flags;
+    private final boolean[] present = new boolean[128], scored = new boolean[128];
+    private final short[][] tankValues = new short[128][5]; // x, y, health, power, fuel
+    private final int[] scores = new int[128];
+    private int shellCount, explosionCount;
+
+    /**
+     * Starts a feed of a match with a keyframe of it as it is now.
+     *
+     * @param simulation the match
+     * @param capacity size of the ring in bytes, which should hold several seconds of play and many keyframes
+     */
+    public SpectatorFeed(Simulation simulation, int capacity) {
+        this.simulation = simulation;
+        this.capacity = capacity;
+        ring = ByteBuffer.allocateDirect(capacity);
+        ringWriter = ring.duplicate();
+        writeKeyframe();
+        if (published > capacity / 4) {
+            throw new IllegalArgumentException("A " + capacity + " byte feed cannot hold keyframes of " + published + " bytes");
+        }
+    }
+
+    private void terrainChanged(int firstColumn, int lastColumn) {
+        dirtyFirstColumn = Math.min(dirtyFirstColumn, firstColumn);
+        dirtyLastColumn = Math.max(dirtyLastColumn, lastColumn);
+    }
+
+    /**
+     * Writes a frame of whatever has changed since the last call, if anything has. Call it after each tick, from
+     * one thread at a time.
+     */
+    public void publish() {
+        if (simulation.getTerrain() != terrain || published - lastKeyframe > capacity / 4) {
+            writeKeyframe(); // A new level, or subscribers that skip ahead need a recent keyframe to land on
+        } else {
+            writeDelta();
+        }
+    }
+
+    /**
+     * @return room for the largest frame the match as it is now could need
+     */
+    private int maxFrameLength() {
+        return 64 + 4 * simulation.getTerrain().getWidth() + 128 * 22 + 4 * simulation.getTrees().size()
+                + 4 * simulation.getProjectiles().size() + 6 * simulation.getExplosions().size();
+    }
+
+    private void startFrame(byte type) {
+        int needed = maxFrameLength();
+        if (frame.capacity() < needed) {
+            frame = ByteBuffer.allocate(needed);
+        }
+        frame.clear();
+        frame.putInt(0).put(type).putInt((int) simulation.getTick());
+    }
+
+    private void writeKeyframe() {
+        if (terrain != null) {
+            terrain.removeListener(terrainListener);
+        }
+        terrain = simulation.getTerrain();
+        terrain.addListener(terrainListener);
+        dirtyFirstColumn = Integer.MAX_VALUE;
+        dirtyLastColumn = -1;
+
+        startFrame(KEYFRAME);
+        frame.putShort((short) terrain.getWorldWidth()).putShort((short) terrain.getWorldHeight())
+                .putShort((short) terrain.getWidth());
+        readEnvironment();
+        frame.put((byte) wind).put((byte) current).put((byte) flags);
+
+        ArrayList<Tank> tanks = simulation.getTanks();
+        Arrays.fill(present, false);
+        frame.put((byte) tanks.size());
+        for (Tank tank : tanks) {
+            char id = tank.getIdentifier();
+            present[id] = scored[id] = true;
+            readTank(tank, tankValues[id]);
+            scores[id] = simulation.getScoreboard().getScore(id);
+            frame.put((byte) id);
+            for (short value : tankValues[id]) {
+                frame.putShort(value);
+            }
+            frame.putInt(tank.getColour()).putInt(scores[id]);
+        }
+        for (int x = 0; x < terrain.getWidth(); x++) {
+            frame.putShort((short) Math.round(terrain.getHeightAtX(x)));
+        }
+        frame.putShort((short) simulation.getTrees().size());
+        for (Tree tree : simulation.getTrees()) {
+            frame.putShort((short) Math.round(tree.getX())).putShort((short) Math.round(tree.getY()));
+        }
+        writeShells();
+        writeExplosions();
+        finishFrame(true);
+    }
+
+    private void writeDelta() {
+        startFrame(DELTA);
+        int sectionsAt = frame.position();
+        int sections = 0;
+        frame.put((byte) 0);
+
+        int oldWind = wind, oldCurrent = current, oldFlags = flags;
+        readEnvironment();
+        if (wind != oldWind || current != oldCurrent || flags != oldFlags) {
+            sections |= ENVIRONMENT;
+            frame.put((byte) wind).put((byte) current).put((byte) flags);
+        }
+
+        ArrayList<Tank> tanks = simulation.getTanks();
+        int countAt = frame.position(), count = 0;
+        frame.put((byte) 0);
+        for (Tank tank : tanks) {
+            char id = tank.getIdentifier();
+            short[] last = tankValues[id];
+            short x = (short) Math.round(tank.getX()), y = (short) Math.round(tank.getY());
+            if (x != last[0] || y != last[1] || tank.getHealth() != last[2] || tank.getPower() != last[3]
+                    || tank.getFuel() != last[4]) {
+                readTank(tank, last);
+                frame.put((byte) id);
+                for (short value : last) {
+                    frame.putShort(value);
+                }
+                count++;
+            }
+        }
+        if (count > 0) {
+            sections |= TANKS;
+            frame.put(countAt, (byte) count);
+        } else {
+            frame.position(countAt);
+        }
+
+        countAt = frame.position();
+        count = 0;
+        frame.put((byte) 0);
+        for (int id = 0; id < present.length; id++) {
+            if (present[id] && !contains(tanks, (char) id)) {
+                present[id] = false;
+                frame.put((byte) id);
+                count++;
+            }
+        }
+        if (count > 0) {
+            sections |= REMOVED;
+            frame.put(countAt, (byte) count);
+        } else {
+            frame.position(countAt);
+        }
+
+        if (dirtyLastColumn >= 0) {
+            sections |= TERRAIN;
+            frame.putShort((short) dirtyFirstColumn).putShort((short) dirtyLastColumn);
+            for (int x = dirtyFirstColumn; x <= dirtyLastColumn; x++) {
+                frame.putShort((short) Math.round(terrain.getHeightAtX(x)));
+            }
+            dirtyFirstColumn = Integer.MAX_VALUE;
+            dirtyLastColumn = -1;
+        }
+
+        countAt = frame.position();
+        count = 0;
+        frame.put((byte) 0);
+        for (int id = 0; id < scored.length; id++) {
+            if (scored[id]) {
+                int score = simulation.getScoreboard().getScore((char) id);
+                if (score != scores[id]) {
+                    scores[id] = score;
+                    frame.put((byte) id).putInt(score);
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            sections |= SCORES;
+            frame.put(countAt, (byte) count);
+        } else {
+            frame.position(countAt);
+        }
+
+        if (shellCount > 0 || simulation.getProjectiles().size() > 0) {
+            sections |= SHELLS;
+            writeShells();
+        }
+        if (explosionCount > 0 || !simulation.getExplosions().isEmpty()) {
+            sections |= EXPLOSIONS;
+            writeExplosions();
+        }
+
+        if (sections != 0) {
+            frame.put(sectionsAt, (byte) sections);
+            finishFrame(false);
+        }
+    }
+
+    private static boolean contains(ArrayList<Tank> tanks, char id) {
+        for (int i = 0; i < tanks.size(); i++) {
+            if (tanks.get(i).getIdentifier() == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void readEnvironment() {
+        Tank tank = simulation.getCurrentTank();
+        wind = simulation.getWind().getWindForce();
+        current = tank == null ? 0 : tank.getIdentifier();
+        flags = simulation.isGameOver() ? GAME_OVER : 0;
+    }
+
+    private static void readTank(Tank tank, short[] values) {
+        values[0] = (short) Math.round(tank.getX());
+        values[1] = (short) Math.round(tank.getY());
+        values[2] = (short) tank.getHealth();
+        values[3] = (short) tank.getPower();
+        values[4] = (short) tank.getFuel();
+    }
+
+    private void writeShells() {
+        ProjectileSystem projectiles = simulation.getProjectiles();
+        shellCount = projectiles.size();
+        frame.putShort((short) shellCount);
+        for (int i = 0; i < shellCount; i++) {
+            frame.putShort((short) Math.round(projectiles.getX(i))).putShort((short) Math.round(projectiles.getY(i)));
+        }
+    }
+
+    private void writeExplosions() {
+        ArrayList<Explosion> explosions = simulation.getExplosions();
+        explosionCount = explosions.size();
+        frame.putShort((short) explosionCount);
+        for (Explosion explosion : explosions) {
+            frame.putShort((short) Math.round(explosion.getX())).putShort((short) Math.round(explosion.getY()))
+                    .putShort((short) Math.round(explosion.getRadius()));
+        }
+    }
+
+    /**
+     * Copies the finished frame into the ring, wrapping round its end if need be, then makes it visible. The write
+     * limit goes up first, so a subscriber still sending the bytes being overwritten can tell afterwards.
+     */
+    private void finishFrame(boolean keyframe) {
+        int length = frame.position();
+        frame.putInt(0, length);
+        frame.flip();
+        long start = published;
+        writeLimit = start + length;
+        VarHandle.storeStoreFence(); // The new limit must be seen no later than the first byte it lets us overwrite
+        int offset = (int) (start % capacity);
+        int first = Math.min(length, capacity - offset);
+        ringWriter.clear();
+        ringWriter.position(offset);
+        frame.limit(first);
+        ringWriter.put(frame);
+        if (first < length) {
+            ringWriter.clear();
+            frame.limit(length);
+            ringWriter.put(frame);
+        }
+        published = start + length;
+        if (keyframe) {
+            lastKeyframe = start;
+        }
+    }
+
+    /**
+     * @return the number of bytes written to the feed so far
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * @return a new subscriber, which starts from the latest keyframe
+     */
+    public Subscriber subscribe() {
+        return new Subscriber();
+    }
+
+    /**
+     * One viewer's position in the feed. Only use a subscriber from one thread at a time.
+     */
+    public class Subscriber {
+        private final ByteBuffer view = ring.duplicate();
+        private long cursor, frameEnd; // Next byte to send, and where the frame it is in ends
+        private int skips = 0;
+
+        private Subscriber() {
+            cursor = frameEnd = lastKeyframe;
+        }
+
+        /**
+         * Writes as much of the feed as the channel takes without blocking.
+         *
+         * @param channel the viewer's channel
+         * @return true if the subscriber has caught up with everything published
+         * @throws IOException if the channel fails, or the subscriber fell so far behind in the middle of a frame
+         *                     that the ring was overwritten while it was being sent
+         */
+        public boolean writeTo(WritableByteChannel channel) throws IOException {
+            long end = published;
+            if (cursor == frameEnd && end - cursor > capacity / 2) {
+                cursor = frameEnd = lastKeyframe; // Too slow to keep up; start again from the latest whole state
+                skips++;
+            }
+            long from = cursor;
+            while (cursor < end) {
+                int offset = (int) (cursor % capacity);
+                int length = (int) Math.min(end - cursor, capacity - offset);
+                view.clear();
+                view.position(offset).limit(offset + length);
+                int written = channel.write(view);
+                cursor += written;
+                if (written < length) {
+                    break;
+                }
+            }
+            while (frameEnd < cursor) {
+                int length = lengthAt(frameEnd);
+                if (length <= 0) {
+                    break; // Overwritten under us, which the check below catches
+                }
+                frameEnd += length;
+            }
+            // Everything read from the ring since from is only whole if the writer has not reached it since
+            VarHandle.loadLoadFence();
+            if (writeLimit - capacity > from) {
+                throw new IOException("Spectator fell too far behind to be sent a whole frame");
+            }
+            return cursor == published;
+        }
+
+        private int lengthAt(long position) {
+            int length = 0;
+            for (int i = 0; i < 4; i++) {
+                length = length << 8 | ring.get((int) ((position + i) % capacity)) & 0xFF;
+            }
+            return length;
+        }
+
+        /**
+         * @return how many times the subscriber has fallen behind and skipped to a keyframe
+         */
+        public int getSkips() {
+            return skips;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package Tanks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * A spectator's copy of a match, rebuilt from the frames of a SpectatorFeed. Deltas only make sense on top of
+ * the keyframe before them, so frames that arrive before the first keyframe are ignored.
+ */
+public class SpectatorState {
+
+    /**
+     * A tank as the spectator last saw it.
+     */
+    public static class TankState {
+        private final char identifier;
+        private int x, y, health, power, fuel, colour;
+
+        TankState(char identifier) {
+            this.identifier = identifier;
+        }
+
+        public char getIdentifier() {
+            return identifier;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getHealth() {
+            return health;
+        }
+
+        public int getPower() {
+            return power;
+        }
+
+        public int getFuel() {
+            return fuel;
+        }
+
+        public int getColour() {
+            return colour;
+        }
+    }
+
+    private boolean started = false;
+    private long tick;
+    private int worldWidth, worldHeight;
+    private int wind;
+    private char currentTank;
+    private boolean gameOver;
+    private final TreeMap<Character, TankState> tanks = new TreeMap<>();
+    private final int[] scores = new int[128];
+    private short[] surface = new short[0];
+    private short[] trees = new short[0]; // x and y of each tree in turn
+    private short[] shells = new short[0]; // x and y of each shell in turn
+    private short[] explosions = new short[0]; // x, y and radius of each explosion in turn
+    private int keyframes = 0;
+
+    /**
+     * @param buffer bytes read from the feed
+     * @return the length of the frame starting at the buffer's position, or 0 if not even its length has arrived
+     */
+    public static int frameLength(ByteBuffer buffer) {
+        return buffer.remaining() < 4 ? 0 : buffer.getInt(buffer.position());
+    }
+
+    /**
+     * Applies every whole frame in the buffer, leaving the buffer at the start of any partly arrived frame.
+     * @param buffer bytes read from the feed, ready to be read
+     */
+    public void applyAll(ByteBuffer buffer) {
+        int length;
+        while ((length = frameLength(buffer)) > 0 && buffer.remaining() >= length) {
+            apply(buffer);
+        }
+    }
+
+    /**
+     * Applies one whole frame.
+     * @param frame the frame, from its length onwards; its position is moved past the frame
+     */
+    public void apply(ByteBuffer frame) {
+        int end = frame.position() + frame.getInt();
+        byte type = frame.get();
+        long frameTick = frame.getInt();
+        if (type == SpectatorFeed.KEYFRAME) {
+            readKeyframe(frame);
+            started = true;
+            keyframes++;
+        } else if (type == SpectatorFeed.DELTA && started) {
+            readDelta(frame);
+        }
+        if (started) {
+            tick = frameTick;
+        }
+        frame.position(end);
+    }
+
+    private void readKeyframe(ByteBuffer frame) {
+        worldWidth = frame.getShort();
+        worldHeight = frame.getShort();
+        surface = new short[frame.getShort()];
+        readEnvironment(frame);
+        tanks.clear();
+        int count = frame.get() & 0xFF;
+        for (int i = 0; i < count; i++) {
+            TankState tank = readTank(frame);
+            tank.colour = frame.getInt();
+            scores[tank.identifier] = frame.getInt();
+        }
+        for (int x = 0; x < surface.length; x++) {
+            surface[x] = frame.getShort();
+        }
+        trees = readShorts(frame, frame.getShort() * 2);
+        shells = readShorts(frame, frame.getShort() * 2);
+        explosions = readShorts(frame, frame.getShort() * 3);
+    }
+
+    private void readDelta(ByteBuffer frame) {
+        int sections = frame.get();
+        if ((sections & SpectatorFeed.ENVIRONMENT) != 0) {
+            readEnvironment(frame);
+        }
+        if ((sections & SpectatorFeed.TANKS) != 0) {
+            for (int count = frame.get() & 0xFF; count > 0; count--) {
+                readTank(frame);
+            }
+        }
+        if ((sections & SpectatorFeed.REMOVED) != 0) {
+            for (int count = frame.get() & 0xFF; count > 0; count--) {
+                tanks.remove((char) frame.get());
+            }
+        }
+        if ((sections & SpectatorFeed.TERRAIN) != 0) {
+            int first = frame.getShort(), last = frame.getShort();
+            for (int x = first; x <= last; x++) {
+                surface[x] = frame.getShort();
+            }
+            for (int i = 0; i < trees.length; i += 2) {
+                if (trees[i] >= first && trees[i] <= last) {
+                    trees[i + 1] = surface[trees[i]]; // Trees stand on the surface
+                }
+            }
+        }
+        if ((sections & SpectatorFeed.SCORES) != 0) {
+            for (int count = frame.get() & 0xFF; count > 0; count--) {
+                char id = (char) frame.get();
+                scores[id] = frame.getInt();
+            }
+        }
+        if ((sections & SpectatorFeed.SHELLS) != 0) {
+            shells = readShorts(frame, frame.getShort() * 2);
+        }
+        if ((sections & SpectatorFeed.EXPLOSIONS) != 0) {
+            explosions = readShorts(frame, frame.getShort() * 3);
+        }
+    }
+
+    private void readEnvironment(ByteBuffer frame) {
+        wind = frame.get();
+        currentTank = (char) frame.get();
+        gameOver = (frame.get() & SpectatorFeed.GAME_OVER) != 0;
+    }
+
+    private TankState readTank(ByteBuffer frame) {
+        TankState tank = tanks.computeIfAbsent((char) frame.get(), TankState::new);
+        tank.x = frame.getShort();
+        tank.y = frame.getShort();
+        tank.health = frame.getShort();
+        tank.power = frame.getShort();
+        tank.fuel = frame.getShort();
+        return tank;
+    }
+
+    private static short[] readShorts(ByteBuffer frame, int count) {
+        short[] values = new short[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = frame.getShort();
+        }
+        return values;
+    }
+
+    /**
+     * @return true once a keyframe has been applied
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return the tick of the last frame applied
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    public int getWorldWidth() {
+        return worldWidth;
+    }
+
+    public int getWorldHeight() {
+        return worldHeight;
+    }
+
+    public int getWind() {
+        return wind;
+    }
+
+    /**
+     * @return the letter of the tank whose turn it is, or 0 if there is none
+     */
+    public char getCurrentTank() {
+        return currentTank;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * @return the tanks still in play, in letter order
+     */
+    public Collection<TankState> getTanks() {
+        return tanks.values();
+    }
+
+    /**
+     * @return the tank with the given letter, or null if it is not in play
+     */
+    public TankState getTank(char identifier) {
+        return tanks.get(identifier);
+    }
+
+    public int getScore(char identifier) {
+        return scores[identifier];
+    }
+
+    /**
+     * @return the number of terrain columns
+     */
+    public int getColumns() {
+        return surface.length;
+    }
+
+    /**
+     * @return the y-coordinate of the terrain surface in a column
+     */
+    public int getSurface(int column) {
+        return surface[column];
+    }
+
+    /**
+     * @return the position of each shell in the air, as x and y pairs
+     */
+    public List<int[]> getShells() {
+        List<int[]> positions = new ArrayList<>();
+        for (int i = 0; i < shells.length; i += 2) {
+            positions.add(new int[]{shells[i], shells[i + 1]});
+        }
+        return positions;
+    }
+
+    public int getTreeCount() {
+        return trees.length / 2;
+    }
+
+    public int getExplosionCount() {
+        return explosions.length / 3;
+    }
+
+    /**
+     * @return how many keyframes have been applied, which includes those a slow spectator skipped ahead to
+     */
+    public int getKeyframes() {
+        return keyframes;
+    }
+}
@@ -1,8 +1,6 @@
 package Tanks;
 
 import processing.core.PImage;
-import java.util.ArrayList;
-import java.util.Iterator;
 import processing.core.PApplet;
 
 public class Tank extends GameObject {
@@ -11,9 +9,10 @@ public class Tank extends GameObject {
     private Terrain terrain;
     private float moveSpeed = 60;
     private int fuel = 250;
-    private PImage fuelImage, parachuteImage;
+    private PImage fuelImage, parachuteImage, parachuteIcon; // Looked up in the shared AssetCache on first draw
+    private final HudText powerText = new HudText("Power: "), fuelText = new HudText("Fuel: "),
+            healthText = new HudText("Health: "), parachuteText = new HudText("");
     private int health = 100, power = 50;
-    private ArrayList<Projectile> projectiles;
     private boolean isActive, shieldActive = false, hasExploded = false;
     private char identifier;
     private Scoreboard scoreboard;
@@ -21,16 +20,16 @@ public class Tank extends GameObject {
     private int parachutes = 1, parachutesUsedThisLevel = 0;
     private int explosionRadius;
     private long turnIndicatorStartTime = -1;
-    private static final int TURN_INDICATOR_DURATION = 2000;
+    private static final int TURN_INDICATOR_DURATION = 2 * Simulation.TICK_RATE; // Two seconds, in ticks
+    // Hit box around the drawn tank, relative to (x, y): the body below and the turret above
+    static final float HALF_WIDTH = 15, TOP = -20, BOTTOM = 10;
+    int indexBucket = -1; // Bucket this tank is filed under in the TankIndex, maintained by the index
 
-    public Tank(PApplet app, float x, float y, int colour, Terrain terrain, char identifier, Scoreboard scoreboard) {
-        super(app, x, y);
+    public Tank(float x, float y, int colour, Terrain terrain, char identifier, Scoreboard scoreboard) {
+        super(x, y);
         this.colour = colour;
         this.terrain = terrain;
-        this.fuelImage = app.loadImage("Tanks/fuel.png");
-        this.parachuteImage = app.loadImage("Tanks/parachute.png");
         this.isActive = false;
-        this.projectiles = new ArrayList<>();
         this.identifier = identifier;
         this.scoreboard = scoreboard;
         updatePosition(false);
@@ -68,13 +67,13 @@ public class Tank extends GameObject {
         float previousY = y; // Store the previous Y position to compare after potential fall
     
         // Calculate the fall speed based on whether a parachute is available
-        float fallSpeed = 120 / app.frameRate; // Default fall speed without parachute
+        float fallSpeed = 120f / Simulation.TICK_RATE; // Default fall speed without parachute
         boolean parachuteDeployed = false;
     
         // When moving, avoid deploying parachutes or calculating fall damage
         if (!isMoving) {
             if (parachutes > 0 && y < terrainHeight) {
-                fallSpeed = 60 / app.frameRate; // Reduced fall speed with parachute
+                fallSpeed = 60f / Simulation.TICK_RATE; // Reduced fall speed with parachute
                 parachuteDeployed = true;
             }
         }
@@ -129,7 +128,7 @@ public class Tank extends GameObject {
      */
     public void moveLeft() {
         if (fuel > 0) {
-            float distance = moveSpeed / app.frameRate;
+            float distance = moveSpeed / Simulation.TICK_RATE;
             if (x - distance >= 0) { // Check if moving left is within the terrain bounds
                 x -= distance;
                 updatePosition(true); // Update the position to reflect movement
@@ -144,7 +143,7 @@ public class Tank extends GameObject {
      */
     public void moveRight() {
         if (fuel > 0) {
-            float distance = moveSpeed / app.frameRate;
+            float distance = moveSpeed / Simulation.TICK_RATE;
             if (x + distance + 30 <= terrain.getWidth()) { // Check if moving right is within the terrain bounds
                 x += distance;
                 updatePosition(true); // Pass true to indicate it's a movement update
@@ -158,8 +157,16 @@ public class Tank extends GameObject {
      * It's starting point is pointing straight upwards.
      */
     public void rotateTurretLeft() {
+        angle = turnedLeft(angle);
+    }
+
+    /**
+     * @param turretAngle a turret angle in radians
+     * @return the angle after one tick of turning left
+     */
+    static float turnedLeft(float turretAngle) {
         float rotationSpeed = 3; // +3 radians per second
-        angle = Math.min(angle + rotationSpeed / app.frameRate, (float) Math.PI / 2);
+        return Math.min(turretAngle + rotationSpeed / Simulation.TICK_RATE, (float) Math.PI / 2);
     }
 
     /**
@@ -167,35 +174,83 @@ public class Tank extends GameObject {
      * It's starting point is pointing straight upwards.
      */
     public void rotateTurretRight() {
+        angle = turnedRight(angle);
+    }
+
+    /**
+     * @param turretAngle a turret angle in radians
+     * @return the angle after one tick of turning right
+     */
+    static float turnedRight(float turretAngle) {
         float rotationSpeed = 3; // -3 radians per second
-        angle = Math.max(angle - rotationSpeed / app.frameRate, -(float) Math.PI / 2);
+        return Math.max(turretAngle - rotationSpeed / Simulation.TICK_RATE, -(float) Math.PI / 2);
     }
 
     /**
      * Fires a projectile from the tank in the direction the turret is facing, influenced by wind.
      * @param wind The current wind affecting projectile trajectories.
-     * @param explosions The list of active explosions to which the new explosion will be added.
-     * @param terrain The terrain where the projectile can land and effect.
-     * @param allTanks The list of all tanks in the game, which could be hit by the projectile.
+     * @param projectiles The shells in the air, to which the new shell is added.
+     */
+    public void fire(Wind wind, ProjectileSystem projectiles) {
+        projectiles.spawn(x, y, getFiringAngle(), power, wind.getWindForce(), this);
+    }
+
+    /**
+     * @return the turret angle in degrees, 0 being straight up and positive to the right
+     */
+    public float getFiringAngle() {
+        return firingAngle(angle);
+    }
+
+    /**
+     * @param turretAngle a turret angle in radians, positive to the left
+     * @return the same angle as fired: in degrees, 0 being straight up and positive to the right
+     */
+    static float firingAngle(float turretAngle) {
+        return (float) (-turretAngle * (180.0 / Math.PI));
+    }
+
+    /**
+     * @return the turret angle in radians, 0 being straight up and positive to the left
      */
-    public void fire(Wind wind, ArrayList<Explosion> explosions, Terrain terrain, ArrayList<Tank> allTanks) {
-        Projectile newProjectile = new Projectile(app, x, y, (float) (-angle * (180.0 / Math.PI)), power, wind.getWindForce(), this);
-        projectiles.add(newProjectile);
-    }
-
-    // Updates and manages projectiles
-    public void updateProjectile(ArrayList<Explosion> explosions, Terrain terrain, ArrayList<Tank> allTanks) {
-        Iterator<Projectile> it = projectiles.iterator();
-        while (it.hasNext()) {
-            Projectile projectile = it.next();
-            projectile.update();
-            if (projectile.checkImpact(terrain)) {
-                explosions.add(new Explosion(app, projectile.getX(), projectile.getY(), terrain, allTanks, projectile.getOwner()));
-                it.remove(); // Remove the projectile as it has impacted
-            } else if (projectile.hasLanded()) {
-                it.remove(); // Remove projectiles that have landed without impact
+    float getTurretAngle() {
+        return angle;
+    }
+
+    /**
+     * Finds where a line segment first enters this tank's hit box, using the slab method.
+     * @return how far along the segment the hit is, from 0 to 1, or -1 if the segment misses
+     */
+    float hitTime(float x0, float y0, float x1, float y1) {
+        return hitTime(x, y, x0, y0, x1, y1);
+    }
+
+    /**
+     * The same test for a tank standing at (tankX, tankY).
+     */
+    static float hitTime(float tankX, float tankY, float x0, float y0, float x1, float y1) {
+        float enter = 0, exit = 1;
+        float dx = x1 - x0, dy = y1 - y0;
+        float left = tankX - HALF_WIDTH, right = tankX + HALF_WIDTH, top = tankY + TOP, bottom = tankY + BOTTOM;
+        if (dx == 0) {
+            if (x0 < left || x0 > right) {
+                return -1;
             }
+        } else {
+            float t0 = (left - x0) / dx, t1 = (right - x0) / dx;
+            enter = Math.max(enter, Math.min(t0, t1));
+            exit = Math.min(exit, Math.max(t0, t1));
         }
+        if (dy == 0) {
+            if (y0 < top || y0 > bottom) {
+                return -1;
+            }
+        } else {
+            float t0 = (top - y0) / dy, t1 = (bottom - y0) / dy;
+            enter = Math.max(enter, Math.min(t0, t1));
+            exit = Math.min(exit, Math.max(t0, t1));
+        }
+        return enter <= exit ? enter : -1;
     }
 
     /**
@@ -212,24 +267,85 @@ public class Tank extends GameObject {
             // Adjust power to not exceed the new health
             if (power > health) {
                 power = health;
-                displayPower(); // Update power display as it might have changed
             }
     
             if (health <= 0 && !hasExploded) {
                 explode(15);
             }
             if (attacker != null && attacker != this) {
-                attacker.getScoreboard().updateScore(attacker.getIdentifier(), oldHealth - health);
+                attacker.getScoreboard().recordDamage(attacker.getIdentifier(), oldHealth - health);
             }
         } else {
             shieldActive = false;
         }
     }
     
+    /**
+     * Copies the state that changes during a match into a snapshot's flat arrays.
+     * @param i the tank's slot in the snapshot
+     */
+    void saveTo(GameSnapshot snapshot, int i) {
+        float[] floats = snapshot.tankFloats;
+        int f = i * GameSnapshot.TANK_FLOATS;
+        floats[f] = x;
+        floats[f + 1] = y;
+        floats[f + 2] = previousX;
+        floats[f + 3] = previousY;
+        floats[f + 4] = angle;
+        int[] ints = snapshot.tankInts;
+        int n = i * GameSnapshot.TANK_INTS;
+        ints[n] = fuel;
+        ints[n + 1] = health;
+        ints[n + 2] = power;
+        ints[n + 3] = parachutes;
+        ints[n + 4] = parachutesUsedThisLevel;
+        ints[n + 5] = explosionRadius;
+        ints[n + 6] = (isActive ? 1 : 0) | (shieldActive ? 2 : 0) | (hasExploded ? 4 : 0);
+        snapshot.tankTurnStarts[i] = turnIndicatorStartTime;
+    }
+
+    /**
+     * Puts back the state saved by saveTo.
+     * @param i the tank's slot in the snapshot
+     */
+    void restoreFrom(GameSnapshot snapshot, int i) {
+        float[] floats = snapshot.tankFloats;
+        int f = i * GameSnapshot.TANK_FLOATS;
+        x = floats[f];
+        y = floats[f + 1];
+        previousX = floats[f + 2];
+        previousY = floats[f + 3];
+        angle = floats[f + 4];
+        int[] ints = snapshot.tankInts;
+        int n = i * GameSnapshot.TANK_INTS;
+        fuel = ints[n];
+        health = ints[n + 1];
+        power = ints[n + 2];
+        parachutes = ints[n + 3];
+        parachutesUsedThisLevel = ints[n + 4];
+        explosionRadius = ints[n + 5];
+        isActive = (ints[n + 6] & 1) != 0;
+        shieldActive = (ints[n + 6] & 2) != 0;
+        hasExploded = (ints[n + 6] & 4) != 0;
+        turnIndicatorStartTime = snapshot.tankTurnStarts[i];
+    }
+
     public int getColour() {
         return colour;
     }
 
+    public int getFuel() {
+        return fuel;
+    }
+
+    public boolean isShieldActive() {
+        return shieldActive;
+    }
+
+    public int getPower() {
+        return power;
+    }
+
     public int getHealth() {
         return health;
     }
@@ -243,15 +359,9 @@ public class Tank extends GameObject {
      */
     public void increasePower() {
         if (isActive && health > 0) { // Only allow power increase if the tank is active and has health
-            int oldPower = power; // Store old power for comparison
-            power += 36 / app.frameRate;  // Increase power by 36 units per second
+            power += 36f / Simulation.TICK_RATE;  // Increase power by 36 units per second
             power = Math.min(power, maxPower); // Cap power at maxPower
             power = Math.min(power, health); // Ensure power does not exceed current health
-    
-            // Display power should not show higher than actual usable power
-            if (power != oldPower) { // Only update if there's a change
-                displayPower(); // Update display to reflect new power level
-            }
         }
     }
     
@@ -260,15 +370,9 @@ public class Tank extends GameObject {
      */
     public void decreasePower() {
         if (isActive && health > 0) { // Only allow power decrease if the tank is active and has health
-            int oldPower = power; // Store old power for comparison
-            power -= 36 / app.frameRate;  // Decrease power by 36 units per second
+            power -= 36f / Simulation.TICK_RATE;  // Decrease power by 36 units per second
             power = Math.max(power, minPower); // Ensure power does not go below minPower
             power = Math.min(power, health); // Ensure power does not exceed current health
-    
-            // Display power should not show lower than actual usable power
-            if (power != oldPower) { // Only update if there's a change
-                displayPower(); // Update display to reflect new power level
-            }
         }
     }
 
@@ -308,7 +412,7 @@ public class Tank extends GameObject {
      * If the tank goes below the map, it explodes a circle with a radius of 30
      */
     public void belowMapExplosion() {
-        if (y > app.height && !hasExploded) {
+        if (y > terrain.getWorldHeight() && !hasExploded) {
             explode(30); // Explode with a radius of 30 if it falls below the map
         }
     }
@@ -320,58 +424,66 @@ public class Tank extends GameObject {
     private void explode(int radius) {
         this.explosionRadius = radius;
         this.hasExploded = true;
-        displayExplosion(); // This will render the explosion visually
     }
 
     /**
      * This explosion is only for tanks when they reach 0 health or fall below the map
      */
-    private void displayExplosion() {
+    private void displayExplosion(PApplet app) {
         app.fill(255, 0, 0); // Use red color for the explosion
         app.noStroke();
         app.ellipse(x, y, explosionRadius * 2, explosionRadius * 2); // Draw the explosion as a simple circle
     }
 
-    public void displayPower() {
+    public void displayPower(PApplet app) {
         app.fill(0);  // White color for text
         app.textSize(16);
         app.textAlign(PApplet.CENTER, PApplet.TOP);
-        app.text("Power: " + PApplet.round(power), app.width / 2, 50);  // Display at a fixed position
+        app.text(powerText.of(power), app.width / 2, 50);  // Display at a fixed position
     }
 
-    private void displayFuelInfo() {
-        int newWidth = fuelImage.width / 10;
-        int newHeight = fuelImage.height / 10;
-        app.image(fuelImage, 135, 5, newWidth, newHeight);
+    private void displayFuelInfo(PApplet app) {
+        if (fuelImage == null) {
+            PImage original = AssetCache.shared().getImage(app, "Tanks/fuel.png");
+            fuelImage = AssetCache.shared().getImage(app, "Tanks/fuel.png", original.width / 10, original.height / 10);
+        }
+        app.image(fuelImage, 135, 5);
         app.fill(0);
         app.textSize(16);
         app.textAlign(PApplet.LEFT, PApplet.TOP);
-        app.text("Fuel: " + fuel, 165, 10);
+        app.text(fuelText.of(fuel), 165, 10);
     }
     
-    private void displayParachuteInfo() {
-        int imageWidth = parachuteImage.width / 2;
-        int imageHeight = parachuteImage.height / 2;
+    private void displayParachuteInfo(PApplet app) {
+        if (parachuteIcon == null) {
+            parachuteIcon = AssetCache.shared().getImage(app, "Tanks/parachute.png", parachuteImage.width / 2, parachuteImage.height / 2);
+        }
+        int imageWidth = parachuteIcon.width;
+        int imageHeight = parachuteIcon.height;
         int x = 135; // Starting position, align under the fuel icon or adjust as needed
         int y = 50; // Position below the fuel info
     
         // Display parachute image
-        app.image(parachuteImage, x, y, imageWidth, imageHeight);
+        app.image(parachuteIcon, x, y);
         // Display the number of parachutes remaining next to the image
         app.fill(0); // Set text color to black
         app.textSize(16);
         app.textAlign(PApplet.LEFT, PApplet.TOP);
-        app.text(parachutes, x + imageWidth + 5, y + imageHeight / 2 - 8); // Adjust text positioning for alignment
+        app.text(parachuteText.of(parachutes), x + imageWidth + 5, y + imageHeight / 2 - 8); // Adjust text positioning for alignment
     }
 
-    public void startTurn(long currentTime) {
-        turnIndicatorStartTime = currentTime;
+    /**
+     * Marks the start of this tank's turn so the turn indicator is shown for a while.
+     * @param currentTick the simulation tick on which the turn started
+     */
+    public void startTurn(long currentTick) {
+        turnIndicatorStartTime = currentTick;
     }
     
-    private void displayTurnIndicator(long currentTime) {
-        if (currentTime - turnIndicatorStartTime < TURN_INDICATOR_DURATION) {
+    private void displayTurnIndicator(PApplet app, long currentTick, float displayX, float displayY) {
+        if (currentTick - turnIndicatorStartTime < TURN_INDICATOR_DURATION) {
             app.pushMatrix();
-            app.translate(x, y - 100);
+            app.translate(displayX, displayY - 100);
             app.fill(0, 0, 0);
             app.noStroke();
             app.rect(-1.5f, 0, 3, 30);
@@ -382,7 +494,7 @@ public class Tank extends GameObject {
     
     
 
-    public void displayHealthBar() {
+    public void displayHealthBar(PApplet app) {
         if (isActive) {
             int healthBarX = app.width / 2 - 100;
             int healthBarY = 10;
@@ -411,16 +523,26 @@ public class Tank extends GameObject {
             app.fill(0); // White color for the text
             app.textSize(16);
             app.textAlign(PApplet.CENTER, PApplet.TOP);
-            app.text("Health: " + health, app.width / 2, 35);
+            app.text(healthText.of(health), app.width / 2, 35);
         }
     }
     
-    // Displays the tank and its projectiles
-    public void display() {
+    /**
+     * Displays the tank, plus the HUD details when it is the active tank.
+     * @param app the sketch to draw on
+     * @param currentTick the current simulation tick, used to time the turn indicator
+     * @param alpha fraction of a tick elapsed since the last simulation step, used to smooth movement
+     */
+    public void display(PApplet app, long currentTick, float alpha) {
+        float displayX = getDisplayX(alpha);
+        float displayY = getDisplayY(alpha);
+        if (parachuteImage == null) {
+            parachuteImage = AssetCache.shared().getImage(app, "Tanks/parachute.png");
+        }
         if (!hasExploded) {
             app.pushMatrix();
             app.noStroke();
-            app.translate(x, y);
+            app.translate(displayX, displayY);
             if (shieldActive) {
                 app.fill(0, 0, 255, 100); // Semi-transparent blue bubble
                 app.ellipse(0, 0, 40, 40); // Assuming the shield bubble size
@@ -438,17 +560,13 @@ public class Tank extends GameObject {
             app.popMatrix();
             app.popMatrix();
 
-            for (Projectile projectile : projectiles) {
-                projectile.display();
-            }
-
             if (isActive) {
-                displayFuelInfo();
-                displayTurnIndicator(app.millis());
-                displayParachuteInfo();
+                displayFuelInfo(app);
+                displayTurnIndicator(app, currentTick, displayX, displayY);
+                displayParachuteInfo(app);
             }
         } else {
-            displayExplosion();
+            displayExplosion(app);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package Tanks;
+
+import java.util.ArrayList;
+
+/**
+ * Spatial index of tanks bucketed by x-coordinate. Explosions and projectiles only look at the tanks in the
+ * few columns they can reach instead of scanning every tank on the map.
+ * Buckets only depend on x, so a tank falling or settling never needs re-indexing; only horizontal moves do.
+ */
+public class TankIndex {
+    private static final int BUCKET_WIDTH = 64; // Pixels per bucket, about two tank widths
+
+    private ArrayList<ArrayList<Tank>> buckets = new ArrayList<>();
+    private ArrayList<Tank> nearby = new ArrayList<>(); // Reused for every query
+    private int size = 0;
+
+    /**
+     * @param mapWidth width of the map in pixels
+     */
+    public TankIndex(int mapWidth) {
+        int bucketCount = Math.max(1, (mapWidth + BUCKET_WIDTH - 1) / BUCKET_WIDTH);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    private int bucketFor(float x) {
+        return Math.max(0, Math.min(buckets.size() - 1, (int) Math.floor(x / BUCKET_WIDTH)));
+    }
+
+    public void add(Tank tank) {
+        int bucket = bucketFor(tank.getX());
+        buckets.get(bucket).add(tank);
+        tank.indexBucket = bucket;
+        size++;
+    }
+
+    public void remove(Tank tank) {
+        if (tank.indexBucket >= 0 && buckets.get(tank.indexBucket).remove(tank)) {
+            size--;
+        }
+        tank.indexBucket = -1;
+    }
+
+    /**
+     * Moves a tank to the right bucket after its x-coordinate has changed.
+     * @param tank the tank that moved
+     */
+    public void update(Tank tank) {
+        if (bucketFor(tank.getX()) != tank.indexBucket) {
+            remove(tank);
+            add(tank);
+        }
+    }
+
+    /**
+     * Finds the tanks that might lie between two x-coordinates. Callers still do their own exact test, as the
+     * result can include tanks from the edges of the buckets that overlap the range.
+     * The returned list is reused by the next query, so it must not be kept.
+     *
+     * @param minX the left edge of the range
+     * @param maxX the right edge of the range
+     * @return the tanks in every bucket the range touches
+     */
+    public ArrayList<Tank> query(float minX, float maxX) {
+        nearby.clear();
+        int last = bucketFor(maxX);
+        for (int bucket = bucketFor(minX); bucket <= last; bucket++) {
+            ArrayList<Tank> tanks = buckets.get(bucket);
+            for (int i = 0; i < tanks.size(); i++) { // Not addAll, which copies the bucket into a new array
+                nearby.add(tanks.get(i));
+            }
+        }
+        return nearby;
+    }
+
+    public int size() {
+        return size;
+    }
+}
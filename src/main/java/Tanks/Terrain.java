@@ -3,95 +3,283 @@ package Tanks;
 import processing.core.PApplet;
 import processing.core.PImage;
 
+import java.util.ArrayList;
+
 
 
 public class Terrain {
     
-    private PApplet app;
-    private int[][] terrainMap;
-    private PImage treeImage;
+    private int width, height; // Size of the world in pixels
     private static final int CELL_SIZE = 32;
     private static final int CELL_HEIGHT = 32;
     private int foregroundColour;
     private Tank lastDestroyer;
     private int[] initialHeights;
+    private float[] pixelHeights; // Surface y-coordinate for every pixel column, the terrain's real shape
+    private float[] cellTops = new float[0]; // Highest surface point in each 32 pixel cell, for quick contact tests
+    private int version = 0; // Bumped on every change to the surface
+    private int changedFirstColumn = -1, changedLastColumn = -1; // Columns the latest change moved
+    private ArrayList<TerrainListener> listeners = new ArrayList<>();
+    private PImage layer; // Rasterised terrain, only redrawn where the surface has changed
+    private int dirtyFirstColumn = Integer.MAX_VALUE, dirtyLastColumn = -1; // Columns the layer has not caught up with
+    private static final int CURVE_DETAIL = 20; // Segments per span, matching Processing's default curveDetail
 
-    public Terrain(PApplet app, PImage treeImage, int foregroundColour) {
-        this.app = app;
-        this.treeImage = treeImage;
-        terrainMap = new int[app.width / CELL_SIZE][app.height / CELL_HEIGHT];
+    public Terrain(int width, int height, int foregroundColour) {
+        this.width = width;
+        this.height = height;
+        pixelHeights = new float[0];
         this.foregroundColour = foregroundColour;
-        this.treeImage = treeImage;
-        if (treeImage != null) {
-            this.treeImage.resize(treeImage.width / 10, treeImage.height / 10);
-        } else {
-            this.treeImage = null;
-        } 
     }
     
 
     /**
-     * Loads terrain from a file, specifically indicated by X.
-     * Initalizes the terrain height.
-     * @param filename path to file containing terrain layout
+     * Initializes the terrain from column heights directly, one entry per 32 pixel column.
+     * The columns are smoothed into the per-pixel heightmap along a Catmull-Rom curve; after that the
+     * heightmap is the terrain and explosions carve into it directly.
+     * @param heights height of each column in cells, measured up from the bottom of the world
      */
-    public void loadTerrain(String filename) {
-        String[] lines = app.loadStrings(filename);
-        terrainMap = new int[28][20]; // Assuming fixed dimensions for simplicity
-        initialHeights = new int[terrainMap.length]; // Store the initial heights for smoothing
+    public void loadHeights(int[] heights) {
+        initialHeights = heights.clone(); // Store the initial heights for smoothing
+        pixelHeights = new float[heights.length * CELL_SIZE];
+        rebuildPixelHeights(0, heights.length - 1);
+        terrainChanged(0, pixelHeights.length - 1);
+    }
 
-        for (int row = 0; row < lines.length; row++) {
-            for (int col = 0; col < lines[row].length(); col++) {
-                if (lines[row].charAt(col) == 'X') {
-                    initialHeights[col] = 20 - row; //  the bottom of the map is 20 rows down
-                }
-            }
-        }     
+    /**
+     * Initializes the terrain from a heightmap that has already been built, one entry per pixel column.
+     * Used for levels loaded from a compiled level pack.
+     * @param heights height of the surface in each pixel column, measured in pixels up from the bottom of the world
+     */
+    public void loadPixelHeights(float[] heights) {
+        initialHeights = new int[0];
+        pixelHeights = new float[heights.length];
+        for (int x = 0; x < heights.length; x++) {
+            pixelHeights[x] = height - heights[x];
+        }
+        terrainChanged(0, pixelHeights.length - 1);
+    }
+
+    /**
+     * @return height of the surface in each pixel column, measured in pixels up from the bottom of the world
+     */
+    public float[] getPixelHeights() {
+        float[] heights = new float[pixelHeights.length];
+        for (int x = 0; x < heights.length; x++) {
+            heights[x] = height - pixelHeights[x];
+        }
+        return heights;
+    }
+
+    /**
+     * Copies the surface into a new terrain with no listeners and nothing rasterised. The copy can be read on
+     * another thread while this terrain keeps changing.
+     * @return the copy
+     */
+    public Terrain copy() {
+        Terrain copy = new Terrain(width, height, foregroundColour);
+        copy.initialHeights = initialHeights == null ? null : initialHeights.clone();
+        copy.pixelHeights = pixelHeights.clone();
+        copy.cellTops = cellTops.clone();
+        copy.version = version;
+        return copy;
     }
 
     public int getWidth() {
-        return terrainMap.length * CELL_SIZE;
+        return pixelHeights.length;
     }
 
     /**
-     * Calculates the terrain height at a specific x-coordinate.
-     * This function interpolates between discrete terrain height points to provide a smooth terrain profile.
+     * @return width of the playable world in pixels, which may be narrower than the terrain map.
+     */
+    public int getWorldWidth() {
+        return width;
+    }
+
+    /**
+     * @return height of the world in pixels; anything at or below this has left the map.
+     */
+    public int getWorldHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the terrain surface at a specific x-coordinate.
+     * This is a single read from the per-pixel heightmap, which is exactly what display() draws.
      *
      * @param x The x-coordinate at which to retrieve the terrain height.
-     * @return The interpolated height of the terrain at the given x-coordinate.
+     * @return The y-coordinate of the terrain surface at the given x-coordinate.
      */
     public float getHeightAtX(float x) {
-        if (x < 0 || x >= terrainMap.length * CELL_SIZE) {
-            return app.height; // Essentially out of bounds
-        }
-        
-        // Calculates the X on the left of the original X
-        int leftIndex = (int) Math.floor(x / CELL_SIZE);
-        // Calculates the X on the right of the original X
-        int rightIndex = (int) Math.ceil(x / CELL_SIZE);
-        
-        // Clamps the values to ensure leftIndex is not minimum the first X value (0)
-        leftIndex = Math.max(0, leftIndex);
-        // Clamps the values to ensure rightIndex is maximum the last index of initialHeights
-        rightIndex = Math.min(initialHeights.length - 1, rightIndex);
-
-        
-        // Lerp factor is a point between 0 and 1. Any value between 0 and 1 indicates how far
-        // between the two indicies the x coordinate is
-        float lerpFactor = (x - leftIndex * CELL_SIZE) / CELL_SIZE;
-
-        // Find how high the terrain is at these two indicies starting from the bottom of the screen
-        float heightLeft = app.height - (initialHeights[leftIndex] * CELL_HEIGHT);
-        float heightRight = app.height - (initialHeights[rightIndex] * CELL_HEIGHT);
-        
-        // Takes the height of the left and right indicies, and the lerp factor which finds a height in between
-        return PApplet.lerp(heightLeft, heightRight, lerpFactor);
+        if (x < 0 || x >= pixelHeights.length) {
+            return height; // Essentially out of bounds
+        }
+        return pixelHeights[(int) x];
+    }
+
+    /**
+     * Finds where a straight path first touches the ground. The heightmap is flat across each pixel column,
+     * so the path is walked column by column: it either meets a column's side wall where it enters, or crosses
+     * the column's surface part way across it. Nothing on the path can be skipped however long it is.
+     * The start of the path is taken to be clear of the ground, as a shell's position from the previous tick is,
+     * unless the path heads further down from there.
+     *
+     * @param x0 the x-coordinate the path starts from
+     * @param y0 the y-coordinate the path starts from
+     * @param x1 the x-coordinate the path ends at
+     * @param y1 the y-coordinate the path ends at
+     * @return how far along the path the first contact is, from 0 to 1, or -1 if the path stays above the ground
+     */
+    public float firstContact(float x0, float y0, float x1, float y1) {
+        if (aboveCells(x0, y0, x1, y1)) {
+            return -1; // Most shells are well clear of the ground, so skip the column walk
+        }
+        float dx = x1 - x0, dy = y1 - y0;
+        int column = (int) Math.floor(x0);
+        if (dx == 0) {
+            float surface = surfaceAt(column);
+            if (y0 >= surface && dy > 0) {
+                return 0;
+            }
+            return y1 >= surface && y1 > y0 ? Math.max(0, surface - y0) / dy : -1;
+        }
+
+        float slope = dy / dx;
+        int lastColumn = (int) Math.floor(x1);
+        int step = dx > 0 ? 1 : -1;
+        float enterX = x0, yEnter = y0;
+        boolean first = true;
+        while (true) {
+            float exitX = column == lastColumn ? x1 : step > 0 ? column + 1 : column;
+            float yExit = y0 + slope * (exitX - x0);
+            float surface = surfaceAt(column);
+
+            if (yEnter >= surface && (!first || dy > 0)) {
+                return (enterX - x0) / dx; // Hit the side of a raised column, or started on the ground heading down
+            }
+            if (yExit >= surface && yExit > yEnter) {
+                float contactX = enterX + (exitX - enterX) * Math.max(0, surface - yEnter) / (yExit - yEnter);
+                return (contactX - x0) / dx;
+            }
+            if (column == lastColumn) {
+                return -1;
+            }
+            column += step;
+            enterX = exitX;
+            yEnter = yExit;
+            first = false;
+        }
+    }
+
+    /**
+     * @return true if the whole path is above the highest ground in every cell it crosses
+     */
+    private boolean aboveCells(float x0, float y0, float x1, float y1) {
+        float lowest = Math.max(y0, y1);
+        int firstCell = (int) Math.floor(Math.min(x0, x1) / CELL_SIZE);
+        int lastCell = (int) Math.floor(Math.max(x0, x1) / CELL_SIZE);
+        for (int cell = firstCell; cell <= lastCell; cell++) {
+            float top = cell < 0 || cell >= cellTops.length ? height : cellTops[cell];
+            if (lowest >= top) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void updateCellTops(int firstColumn, int lastColumn) {
+        int cellCount = (pixelHeights.length + CELL_SIZE - 1) / CELL_SIZE;
+        if (cellTops.length != cellCount) {
+            cellTops = new float[cellCount];
+            firstColumn = 0;
+            lastColumn = pixelHeights.length - 1;
+        }
+        for (int cell = Math.max(0, firstColumn / CELL_SIZE); cell <= lastColumn / CELL_SIZE && cell < cellCount; cell++) {
+            float top = height;
+            int end = Math.min(pixelHeights.length, (cell + 1) * CELL_SIZE);
+            for (int column = cell * CELL_SIZE; column < end; column++) {
+                top = Math.min(top, pixelHeights[column]);
+            }
+            cellTops[cell] = top;
+        }
+    }
+
+    private float surfaceAt(int column) {
+        return column < 0 || column >= pixelHeights.length ? height : pixelHeights[column];
+    }
+
+    /**
+     * Recalculates the per-pixel heightmap from the column heights for every pixel whose curve depends on the given columns.
+     * A Catmull-Rom span between two columns uses the column before and after as well, so a change to
+     * one column reaches two spans either side of it.
+     *
+     * @param firstColumn The first column whose height changed.
+     * @param lastColumn The last column whose height changed.
+     */
+    private void rebuildPixelHeights(int firstColumn, int lastColumn) {
+        int lastIndex = initialHeights.length - 1;
+        int firstSpan = Math.max(0, firstColumn - 2);
+        int lastSpan = Math.min(lastIndex - 1, lastColumn + 1);
+        float[] curveX = new float[CURVE_DETAIL + 1];
+        float[] curveY = new float[CURVE_DETAIL + 1];
+
+        for (int span = firstSpan; span <= lastSpan; span++) {
+            // The first and last columns are duplicated as control points, exactly as display() does
+            float x0 = Math.max(0, span - 1) * CELL_SIZE, y0 = columnY(Math.max(0, span - 1));
+            float x1 = span * CELL_SIZE, y1 = columnY(span);
+            float x2 = (span + 1) * CELL_SIZE, y2 = columnY(span + 1);
+            float x3 = Math.min(lastIndex, span + 2) * CELL_SIZE, y3 = columnY(Math.min(lastIndex, span + 2));
+
+            // Sample the span into the same number of straight segments Processing draws for a curve
+            for (int i = 0; i <= CURVE_DETAIL; i++) {
+                float t = (float) i / CURVE_DETAIL;
+                curveX[i] = catmullRom(x0, x1, x2, x3, t);
+                curveY[i] = catmullRom(y0, y1, y2, y3, t);
+            }
+
+            // Read each pixel column off those segments
+            int segment = 0;
+            for (int x = (int) x1; x < (int) x2; x++) {
+                while (segment < CURVE_DETAIL - 1 && curveX[segment + 1] <= x) {
+                    segment++;
+                }
+                float segmentWidth = curveX[segment + 1] - curveX[segment];
+                float lerpFactor = segmentWidth > 0 ? (x - curveX[segment]) / segmentWidth : 0;
+                pixelHeights[x] = PApplet.lerp(curveY[segment], curveY[segment + 1], lerpFactor);
+            }
+        }
+
+        // Past the last column the terrain stays flat at the last column's height
+        if (lastIndex >= 0 && lastColumn >= lastIndex) {
+            for (int x = lastIndex * CELL_SIZE; x < pixelHeights.length; x++) {
+                pixelHeights[x] = columnY(lastIndex);
+            }
+        }
+    }
+
+    /**
+     * @return the y-coordinate of the top of the given column
+     */
+    private float columnY(int column) {
+        return height - (initialHeights[column] * CELL_HEIGHT);
+    }
+
+    /**
+     * Evaluates a Catmull-Rom curve, the curve Processing's curveVertex draws with the default tightness.
+     */
+    private static float catmullRom(float p0, float p1, float p2, float p3, float t) {
+        float t2 = t * t;
+        float t3 = t2 * t;
+        return 0.5f * ((2 * p1)
+                + (-p0 + p2) * t
+                + (2 * p0 - 5 * p1 + 4 * p2 - p3) * t2
+                + (-p0 + 3 * p1 - 3 * p2 + p3) * t3);
     }
     
 
     /**
-     * Simulates the destruction of terrain due to an explosion. This method adjusts the terrain heights within the radius of the explosion.
-     * It also records the tank responsible for the destruction.
+     * Carves a circular crater into the terrain. In each pixel column the part of the circle that is under
+     * the surface is removed, and any ground left above the circle drops down to fill the gap.
+     * Listeners are told which pixel columns changed. It also records the tank responsible for the destruction.
      *
      * @param explosionX The x-coordinate of the explosion's center.
      * @param explosionY The y-coordinate of the explosion's center.
@@ -99,42 +287,157 @@ public class Terrain {
      * @param destroyer The tank responsible for the explosion.
      */
     public void destroyTerrain(float explosionX, float explosionY, float explosionRadius, Tank destroyer) {
-        int startIndex = Math.max(0, (int) ((explosionX - explosionRadius) / CELL_SIZE));
-        int endIndex = Math.min(initialHeights.length - 1, (int) ((explosionX + explosionRadius) / CELL_SIZE));
+        int firstColumn = Math.max(0, (int) Math.ceil(explosionX - explosionRadius));
+        int lastColumn = Math.min(pixelHeights.length - 1, (int) Math.floor(explosionX + explosionRadius));
+        float radiusSquared = explosionRadius * explosionRadius;
+        int firstChanged = Integer.MAX_VALUE, lastChanged = -1;
 
-        for (int i = startIndex; i <= endIndex; i++) {
-                initialHeights[i] = Math.max(0, initialHeights[i] - 1);  // Lower by one unit for test
+        for (int x = firstColumn; x <= lastColumn; x++) {
+            float dx = x - explosionX;
+            float halfChord = (float) Math.sqrt(Math.max(0, radiusSquared - dx * dx));
+            float craterTop = explosionY - halfChord;
+            float craterBottom = explosionY + halfChord;
+            // Only the ground between the surface and the bottom of the circle is blown away
+            float removed = craterBottom - Math.max(pixelHeights[x], craterTop);
+            if (removed > 0 && pixelHeights[x] < height) {
+                pixelHeights[x] = Math.min(height, pixelHeights[x] + removed);
+                firstChanged = Math.min(firstChanged, x);
+                lastChanged = x;
             }
+        }
         lastDestroyer = destroyer;
+        if (lastChanged >= 0) {
+            terrainChanged(firstChanged, lastChanged);
         }
+    }
+
+    /**
+     * Registers a listener to be told about every later change to the terrain surface.
+     * @param listener the listener to add
+     */
+    public void addListener(TerrainListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TerrainListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return a number that changes every time the terrain surface changes
+     */
+    public int getVersion() {
+        return version;
+    }
 
+    /**
+     * @return the first pixel column the latest change to the surface moved, or -1 if it has never changed
+     */
+    public int getChangedFirstColumn() {
+        return changedFirstColumn;
+    }
+
+    /**
+     * @return the last pixel column the latest change to the surface moved, inclusive, or -1 if it has never
+     *         changed
+     */
+    public int getChangedLastColumn() {
+        return changedLastColumn;
+    }
+
+    private void terrainChanged(int firstColumn, int lastColumn) {
+        version++;
+        changedFirstColumn = firstColumn;
+        changedLastColumn = lastColumn;
+        updateCellTops(firstColumn, lastColumn);
+        dirtyFirstColumn = Math.min(dirtyFirstColumn, firstColumn);
+        dirtyLastColumn = Math.max(dirtyLastColumn, lastColumn);
+        for (TerrainListener listener : listeners) {
+            listener.terrainChanged(firstColumn, lastColumn);
+        }
+    }
+
+
+    /**
+     * Copies the surface into an array, which must be at least as long as the terrain is wide.
+     * @param heights where to copy the surface, in the terrain's own coordinates
+     */
+    void saveHeights(float[] heights) {
+        System.arraycopy(pixelHeights, 0, heights, 0, pixelHeights.length);
+    }
+
+    /**
+     * Puts back a surface saved by saveHeights. Only the columns that differ are copied, and listeners hear about
+     * them as they would about a crater, so trees, previews and the drawn layer catch up.
+     * @param heights the saved surface
+     */
+    void restoreHeights(float[] heights) {
+        int first = 0, last = pixelHeights.length - 1;
+        while (first <= last && pixelHeights[first] == heights[first]) {
+            first++;
+        }
+        while (last >= first && pixelHeights[last] == heights[last]) {
+            last--;
+        }
+        if (first <= last) {
+            System.arraycopy(heights, first, pixelHeights, first, last - first + 1);
+            terrainChanged(first, last);
+        }
+    }
 
     public Tank getLastDestroyer() {
         return lastDestroyer;
     }
 
-    public void display() {
-        app.noStroke();
-        app.fill(foregroundColour);
-        app.beginShape();
-    
-        // Duplicate the starting control point
-        app.curveVertex(0, app.height - initialHeights[0] * CELL_HEIGHT);
-    
-        // Loop through the terrain heights and create vertices
-        for (int i = 0; i < terrainMap.length; i++) {
-            int x = i * CELL_SIZE;
-            int y = app.height - (initialHeights[i] * CELL_HEIGHT);
-            app.curveVertex(x, y);
-        }
-        
-        // Duplicate the ending control point
-        app.curveVertex(terrainMap.length * CELL_SIZE - CELL_SIZE, app.height - initialHeights[terrainMap.length - 1] * CELL_HEIGHT);
-        // Close the shape at the bottom right
-        app.vertex(terrainMap.length * CELL_SIZE - CELL_SIZE, app.height);
-        // Close the shape at the bottom left
-        app.vertex(0, app.height);
-        app.endShape(app.CLOSE);
-                
-    }
-}
\ No newline at end of file
+    /**
+     * Draws the terrain from a cached image layer. The layer is rasterised straight from the heightmap the
+     * first time, and after that only the pixel columns changed since the last frame are redrawn, so frames
+     * where nothing exploded cost a single image draw.
+     */
+    public void display(PApplet app) {
+        int layerWidth = Math.min(pixelHeights.length, width);
+        if (layer == null) {
+            layer = app.createImage(layerWidth, height, PApplet.ARGB);
+            dirtyFirstColumn = 0;
+            dirtyLastColumn = layerWidth - 1;
+        }
+        if (dirtyLastColumn >= dirtyFirstColumn) {
+            rasterise(dirtyFirstColumn, Math.min(dirtyLastColumn, layerWidth - 1));
+            dirtyFirstColumn = Integer.MAX_VALUE;
+            dirtyLastColumn = -1;
+        }
+        app.image(layer, 0, 0);
+    }
+
+    /**
+     * Redraws a range of pixel columns of the terrain layer. Each column is filled from its surface down, and
+     * the pixel the surface passes through is blended by how much of it is covered so the edge stays smooth.
+     *
+     * @param firstColumn the first pixel column to redraw
+     * @param lastColumn the last pixel column to redraw, inclusive
+     */
+    private void rasterise(int firstColumn, int lastColumn) {
+        if (lastColumn < firstColumn) {
+            return;
+        }
+        int layerWidth = layer.width;
+        int rgb = foregroundColour & 0x00ffffff;
+        int solid = 0xff000000 | rgb;
+        layer.loadPixels();
+        for (int x = firstColumn; x <= lastColumn; x++) {
+            float surface = Math.max(0, pixelHeights[x]);
+            int top = Math.min(height, (int) surface);
+            for (int y = 0; y < top; y++) {
+                layer.pixels[y * layerWidth + x] = 0;
+            }
+            if (top < height) {
+                int coverage = (int) ((1 - (surface - top)) * 255);
+                layer.pixels[top * layerWidth + x] = (coverage << 24) | rgb;
+                for (int y = top + 1; y < height; y++) {
+                    layer.pixels[y * layerWidth + x] = solid;
+                }
+            }
+        }
+        layer.updatePixels(firstColumn, 0, lastColumn - firstColumn + 1, height);
+    }
+}
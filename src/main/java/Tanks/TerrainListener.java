@@ -0,0 +1,14 @@
+package Tanks;
+
+/**
+ * Notified whenever the terrain surface changes, with the range of pixel columns that moved.
+ * Anything that caches something derived from the terrain only needs to redo that range.
+ */
+public interface TerrainListener {
+
+    /**
+     * @param firstColumn the first pixel column whose height changed
+     * @param lastColumn the last pixel column whose height changed, inclusive
+     */
+    void terrainChanged(int firstColumn, int lastColumn);
+}
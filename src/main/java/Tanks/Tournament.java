@@ -0,0 +1,304 @@
+package Tanks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Command-line runner that plays many headless matches between computer players and reports how each player did.
+ * Each match plays every level in the config from the start, on its own GameConfig and Simulation, and matches
+ * run in parallel on a pool of worker threads. Every finished match is streamed to a CSV or JSON Lines file
+ * (chosen by the output file's extension), and win rates and mean scores with 95% confidence intervals are
+ * printed at the end.
+ *
+ * Usage: {@code Tournament [--config config.json] [--matches 100] [--threads <cores>] [--candidates 4000]
+ * [--lineup A=search,B=random] [--out tournament.csv] [--max-minutes 30] [--seed 1] [--replays <directory>]}
+ *
+ * The lineup gives each player letter a bot: "search" for ComputerPlayer, "random" for RandomPlayer.
+ * Letters not named play "search". Match n is seeded with seed + n, and with --replays each match is also
+ * recorded as match-n.replay so any result can be watched or re-run.
+ */
+public class Tournament {
+    private static final double Z = 1.96; // 95% confidence
+
+    private final String configPath;
+    private final int matches, threads, maxCandidates;
+    private final long maxTicks, seed;
+    private String replayDirectory; // Null to record no replays
+    private final List<Character> letters; // Every tank letter in any level, in order
+    private final Set<Character> searchPlayers = new HashSet<>(), randomPlayers = new HashSet<>();
+
+    /**
+     * The outcome of one match.
+     */
+    static class MatchResult {
+        final int match;
+        final char winner; // '-' for a draw
+        final boolean finished; // False if the match hit the tick limit
+        final int levels, turns;
+        final long ticks;
+        final HashMap<Character, int[]> players = new HashMap<>(); // Score, shots and damage dealt
+
+        MatchResult(int match, char winner, boolean finished, int levels, int turns, long ticks) {
+            this.match = match;
+            this.winner = winner;
+            this.finished = finished;
+            this.levels = levels;
+            this.turns = turns;
+            this.ticks = ticks;
+        }
+
+        String toCsv(List<Character> letters) {
+            StringBuilder line = new StringBuilder();
+            line.append(match).append(',').append(winner).append(',').append(finished).append(',')
+                    .append(levels).append(',').append(ticks).append(',').append(turns);
+            for (char letter : letters) {
+                int[] stats = players.getOrDefault(letter, new int[3]);
+                line.append(',').append(stats[0]).append(',').append(stats[1]).append(',').append(stats[2]);
+            }
+            return line.toString();
+        }
+
+        String toJson(List<Character> letters) {
+            StringBuilder line = new StringBuilder();
+            line.append("{\"match\":").append(match)
+                    .append(",\"winner\":").append(winner == '-' ? "null" : "\"" + winner + "\"")
+                    .append(",\"finished\":").append(finished)
+                    .append(",\"levels\":").append(levels)
+                    .append(",\"ticks\":").append(ticks)
+                    .append(",\"turns\":").append(turns)
+                    .append(",\"players\":{");
+            String separator = "";
+            for (char letter : letters) {
+                int[] stats = players.getOrDefault(letter, new int[3]);
+                line.append(separator).append('"').append(letter).append("\":{\"score\":").append(stats[0])
+                        .append(",\"shots\":").append(stats[1]).append(",\"damage\":").append(stats[2]).append('}');
+                separator = ",";
+            }
+            return line.append("}}").toString();
+        }
+    }
+
+    Tournament(String configPath, int matches, int threads, int maxCandidates, String lineup, long maxTicks, long seed) {
+        this.configPath = configPath;
+        this.matches = matches;
+        this.threads = threads;
+        this.maxCandidates = maxCandidates;
+        this.maxTicks = maxTicks;
+        this.seed = seed;
+
+        GameConfig config = new GameConfig(configPath);
+        TreeSet<Character> found = new TreeSet<>();
+        for (int i = 0; i < config.getLevelCount(); i++) {
+            Level level = Level.load(config, i, App.WIDTH, App.HEIGHT);
+            for (int t = 0; t < level.getTankCount(); t++) {
+                found.add(level.getTankIdentifier(t));
+            }
+        }
+        letters = new ArrayList<>(found);
+
+        HashMap<Character, String> bots = new HashMap<>();
+        for (String entry : lineup.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length == 2) {
+                bots.put(parts[0].trim().charAt(0), parts[1].trim());
+            }
+        }
+        for (char letter : letters) {
+            String bot = bots.getOrDefault(letter, "search");
+            if (bot.equals("random")) {
+                randomPlayers.add(letter);
+            } else if (bot.equals("search")) {
+                searchPlayers.add(letter);
+            } else {
+                throw new IllegalArgumentException("Unknown bot '" + bot + "' for player " + letter);
+            }
+        }
+    }
+
+    /**
+     * @param directory directory to record every match into, or null to record none
+     */
+    void setReplayDirectory(String directory) {
+        this.replayDirectory = directory;
+    }
+
+    /**
+     * Plays one match from the first level to the final scoreboard, or until the tick limit.
+     */
+    MatchResult playMatch(int match) {
+        GameConfig config = new GameConfig(configPath);
+        Simulation simulation = new Simulation(config, App.WIDTH, App.HEIGHT, seed + match);
+        ReplayRecorder recorder = replayDirectory == null ? null
+                : ReplayRecorder.record(Paths.get(replayDirectory, "match-" + match + ".replay"), configPath, simulation, App.WIDTH, App.HEIGHT);
+        Player[] bots = {
+                new ComputerPlayer(searchPlayers, maxCandidates, true),
+                new RandomPlayer(randomPlayers, seed + match)
+        };
+        HashMap<Character, Integer> shots = new HashMap<>();
+        int turns = 0;
+
+        while (!simulation.isGameOver() && simulation.getTick() < maxTicks) {
+            EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+            Tank tank = simulation.getCurrentTank();
+            for (Player bot : bots) {
+                if (bot.act(simulation, actions)) {
+                    break;
+                }
+            }
+            if (tank != null && actions.contains(Action.FIRE)) {
+                shots.merge(tank.getIdentifier(), 1, Integer::sum);
+                turns++;
+            }
+            simulation.step(actions);
+        }
+        if (recorder != null) {
+            recorder.setEndTick(simulation.getTick());
+            recorder.close();
+        }
+
+        Scoreboard scoreboard = simulation.getScoreboard();
+        char winner = '-';
+        int best = Integer.MIN_VALUE;
+        for (char letter : letters) {
+            int score = scoreboard.getScore(letter);
+            if (score > best) {
+                best = score;
+                winner = letter;
+            } else if (score == best) {
+                winner = '-'; // Tied for the lead
+            }
+        }
+        MatchResult result = new MatchResult(match, winner, simulation.isGameOver(), config.getCurrentLevelIndex() + 1, turns, simulation.getTick());
+        for (char letter : letters) {
+            result.players.put(letter, new int[]{scoreboard.getScore(letter), shots.getOrDefault(letter, 0), scoreboard.getDamageDealt(letter)});
+        }
+        return result;
+    }
+
+    /**
+     * Plays every match, writing each result as it finishes, and prints the summary.
+     *
+     * @param output file to stream results to, JSON Lines if it ends in .jsonl and CSV otherwise
+     */
+    void run(String output) throws IOException, InterruptedException, ExecutionException {
+        boolean json = output.endsWith(".jsonl");
+        int[] wins = new int[letters.size()];
+        double[] scoreSum = new double[letters.size()], scoreSquares = new double[letters.size()];
+        int draws = 0, unfinished = 0;
+        long start = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<MatchResult> completed = new ExecutorCompletionService<>(pool);
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(output))) {
+            if (!json) {
+                StringBuilder header = new StringBuilder("match,winner,finished,levels,ticks,turns");
+                for (char letter : letters) {
+                    header.append(",score_").append(letter).append(",shots_").append(letter).append(",damage_").append(letter);
+                }
+                writer.write(header.toString());
+                writer.newLine();
+            }
+
+            // Keep a couple of matches queued per worker rather than submitting them all at once
+            int submitted = 0;
+            for (; submitted < Math.min(matches, threads * 2); submitted++) {
+                int match = submitted;
+                completed.submit(() -> playMatch(match));
+            }
+            for (int done = 0; done < matches; done++) {
+                MatchResult result = completed.take().get();
+                if (submitted < matches) {
+                    int match = submitted++;
+                    completed.submit(() -> playMatch(match));
+                }
+
+                writer.write(json ? result.toJson(letters) : result.toCsv(letters));
+                writer.newLine();
+                writer.flush();
+
+                if (result.winner == '-') {
+                    draws++;
+                }
+                if (!result.finished) {
+                    unfinished++;
+                }
+                for (int i = 0; i < letters.size(); i++) {
+                    if (result.winner == letters.get(i)) {
+                        wins[i]++;
+                    }
+                    int score = result.players.get(letters.get(i))[0];
+                    scoreSum[i] += score;
+                    scoreSquares[i] += (double) score * score;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d matches in %.1f s (%.1f per second), %d drawn, %d stopped at the tick limit%n",
+                matches, seconds, matches / seconds, draws, unfinished);
+        System.out.println("Player  Bot     Wins  Win rate (95% CI)        Mean score (95% CI)");
+        for (int i = 0; i < letters.size(); i++) {
+            char letter = letters.get(i);
+            double[] winInterval = wilson(wins[i], matches);
+            double mean = scoreSum[i] / matches;
+            double variance = matches > 1 ? (scoreSquares[i] - matches * mean * mean) / (matches - 1) : 0;
+            double margin = Z * Math.sqrt(Math.max(0, variance) / matches);
+            System.out.printf("%-7c %-7s %5d  %5.1f%% (%5.1f%% - %5.1f%%)   %7.1f (%.1f - %.1f)%n",
+                    letter, randomPlayers.contains(letter) ? "random" : "search", wins[i],
+                    100.0 * wins[i] / matches, 100 * winInterval[0], 100 * winInterval[1],
+                    mean, mean - margin, mean + margin);
+        }
+    }
+
+    /**
+     * Wilson score interval for a proportion, which stays sensible for rates near 0 or 1 and small samples.
+     * @return the lower and upper bound
+     */
+    static double[] wilson(int successes, int trials) {
+        if (trials == 0) {
+            return new double[]{0, 1};
+        }
+        double p = (double) successes / trials;
+        double z2 = Z * Z;
+        double denominator = 1 + z2 / trials;
+        double centre = (p + z2 / (2 * trials)) / denominator;
+        double halfWidth = Z * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+        return new double[]{Math.max(0, centre - halfWidth), Math.min(1, centre + halfWidth)};
+    }
+
+    public static void main(String[] args) throws Exception {
+        HashMap<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        Tournament tournament = new Tournament(
+                options.getOrDefault("config", "config.json"),
+                Integer.parseInt(options.getOrDefault("matches", "100")),
+                Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(options.getOrDefault("candidates", "4000")),
+                options.getOrDefault("lineup", ""),
+                Long.parseLong(options.getOrDefault("max-minutes", "30")) * 60 * Simulation.TICK_RATE,
+                Long.parseLong(options.getOrDefault("seed", "1")));
+        tournament.setReplayDirectory(options.get("replays"));
+        tournament.run(options.getOrDefault("out", "tournament.csv"));
+    }
+}
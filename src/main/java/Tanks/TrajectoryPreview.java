@@ -0,0 +1,154 @@
+package Tanks;
+
+import processing.core.PApplet;
+
+/**
+ * The arc the active tank's next shot will follow, drawn as an aiming guide.
+ * The arc is stepped with exactly the same launch velocity, wind and gravity as ProjectileSystem and ends where
+ * Terrain.firstContact says the shell meets the ground, so it shows the real landing point. Tanks in the way
+ * are not considered.
+ * The last arc is memoised by the inputs that shape it: start position, angle, power, wind and terrain version.
+ * Frames where none of them changed draw the stored points without stepping anything.
+ */
+public class TrajectoryPreview {
+    private static final int MAX_STEPS = 10 * Simulation.TICK_RATE; // Ten seconds of flight
+    private static final int DOT_SPACING = 2; // Ticks between drawn dots
+
+    private float[] points = new float[2 * (MAX_STEPS + 1)]; // x, y of the shell at the end of every tick
+    private int pointCount = 0;
+    private boolean landed = false; // Whether the arc ends on the ground rather than leaving the world
+    private float minX, maxX; // Horizontal extent of the arc
+
+    // Inputs of the stored arc
+    private float startX = Float.NaN, startY, angle, windForce;
+    private int power, terrainVersion;
+    private Terrain terrain;
+
+    /**
+     * Makes sure the stored arc matches a tank's current aim, recomputing it only if something has changed.
+     *
+     * @param tank the tank about to fire
+     * @param wind the current wind
+     * @param terrain the terrain the shot will land on
+     * @return true if the arc had to be recomputed
+     */
+    public boolean update(Tank tank, Wind wind, Terrain terrain) {
+        float x = tank.getX(), y = tank.getY(), firingAngle = tank.getFiringAngle(), force = wind.getWindForce();
+        int firingPower = tank.getPower(), version = terrain.getVersion();
+        if (x == startX && y == startY && firingAngle == angle && firingPower == power && force == windForce
+                && terrain == this.terrain && version == terrainVersion) {
+            return false;
+        }
+        trace(terrain, x, y, firingAngle, firingPower, force);
+        return true;
+    }
+
+    /**
+     * Computes the arc of a shot from any position, whatever is stored. Used by FiringTable to trace its entries.
+     * Steps the shell tick by tick, in the same order and float arithmetic as ProjectileSystem.update.
+     */
+    void trace(Terrain terrain, float fromX, float fromY, float firingAngle, int firingPower, float force) {
+        startX = fromX;
+        startY = fromY;
+        angle = firingAngle;
+        power = firingPower;
+        windForce = force;
+        this.terrain = terrain;
+        terrainVersion = terrain.getVersion();
+
+        float x = startX, y = startY;
+        float vx = ProjectileSystem.launchVelocityX(angle, power);
+        float vy = ProjectileSystem.launchVelocityY(angle, power);
+        float windAcceleration = ProjectileSystem.windAcceleration(windForce);
+        float worldWidth = terrain.getWorldWidth(), worldHeight = terrain.getWorldHeight();
+
+        points[0] = x;
+        points[1] = y;
+        pointCount = 1;
+        landed = false;
+        minX = maxX = x;
+        boolean armed = false; // Clear of the firing tank's hull, as ProjectileSystem tracks it
+        for (int step = 0; step < MAX_STEPS; step++) {
+            float x0 = x, y0 = y;
+            vx += windAcceleration;
+            x += vx;
+            y += vy;
+            vy += ProjectileSystem.GRAVITY;
+
+            armed = armed || Tank.hitTime(startX, startY, x, y, x, y) < 0;
+            float hit = armed || y > y0 ? terrain.firstContact(x0, y0, x, y) : -1;
+            if (hit >= 0) {
+                x = x0 + (x - x0) * hit;
+                y = y0 + (y - y0) * hit;
+                landed = true;
+            }
+            points[2 * pointCount] = x;
+            points[2 * pointCount + 1] = y;
+            pointCount++;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            if (landed || y >= worldHeight || y <= 0 || x < 0 || x > worldWidth) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return whether the arc ends on the ground, as opposed to leaving the world or running out of steps
+     */
+    public boolean isLanded() {
+        return landed;
+    }
+
+    /**
+     * @return the leftmost x-coordinate the arc reaches
+     */
+    public float getMinX() {
+        return minX;
+    }
+
+    /**
+     * @return the rightmost x-coordinate the arc reaches
+     */
+    public float getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * @return the x-coordinate at the end of the arc
+     */
+    public float getEndX() {
+        return points[2 * pointCount - 2];
+    }
+
+    /**
+     * @return the y-coordinate at the end of the arc
+     */
+    public float getEndY() {
+        return points[2 * pointCount - 1];
+    }
+
+    /**
+     * Draws the stored arc as a dotted line, with a ring where the shell will land.
+     * @param app the sketch to draw on
+     * @param colour colour of the firing tank
+     */
+    public void display(PApplet app, int colour) {
+        if (pointCount == 0) {
+            return;
+        }
+        app.noStroke();
+        app.fill(colour, 160);
+        for (int i = DOT_SPACING; i < pointCount; i += DOT_SPACING) {
+            app.ellipse(points[2 * i], points[2 * i + 1], 3, 3);
+        }
+        if (landed) {
+            app.noFill();
+            app.stroke(colour);
+            app.strokeWeight(2);
+            app.ellipse(getEndX(), getEndY(), 12, 12);
+            app.noStroke();
+            app.strokeWeight(1);
+        }
+    }
+}
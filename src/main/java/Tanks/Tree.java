@@ -5,42 +5,38 @@ import processing.core.PImage;
 import java.util.Random; 
 
 public class Tree extends GameObject {
-    private PImage treeImage;
     private Terrain terrain;
-    private Random rand;
 
-    public Tree(PApplet app, PImage treeImage, float x, Terrain terrain) {
-        super(app, x, 0);
-        this.treeImage = treeImage;
+    /**
+     * @param x where the level places the tree, which is moved up to 30 pixels either way
+     * @param terrain the terrain the tree stands on
+     * @param random source of the tree's offset
+     */
+    public Tree(float x, Terrain terrain, Random random) {
+        super(x, 0);
         this.terrain = terrain;
-        this.rand = new Random(); 
-        this.x += rand.nextInt(61) - 30; // Random.nextInt(61) gives a value from 0 to 60, subtract 30 to get range -30 to +30
+        this.x += random.nextInt(61) - 30; // Random.nextInt(61) gives a value from 0 to 60, subtract 30 to get range -30 to +30
         updatePosition(); // Set initial y position based on terrain height
     }
 
 
     /**
      * Updates the vertical position of the tree based on the terrain's height at its current x value.
-     * This method ensures that the tree is aligned with the terrain surface.
-     * If no image is associated, the tree's base directly sits on the terrain.
+     * The tree's y is the point where its trunk meets the terrain surface.
      */
     public void updatePosition() {
-        float terrainHeight = terrain.getHeightAtX(this.x);
-        if (treeImage != null) {
-            this.y = terrainHeight - treeImage.height / 2; // Adjusting so that the center of the tree aligns with the terrain surface
-        } else {
-            this.y = terrainHeight;
-        }
+        this.y = terrain.getHeightAtX(this.x);
     }
 
-    public int getTreeImageHeight() {
-        return (treeImage != null) ? treeImage.height : 0;
-    }
-
-    public void display() {
+    /**
+     * Draws the tree with its base on the terrain surface.
+     * @param app the sketch to draw on
+     * @param treeImage the current level's tree image, or null if the level has no tree image
+     */
+    public void display(PApplet app, PImage treeImage) {
         if (treeImage != null) {
             app.imageMode(PApplet.CENTER);
-            app.image(treeImage, x, y);
+            app.image(treeImage, x, y - treeImage.height / 2); // Adjusting so that the center of the tree aligns with the terrain surface
             app.imageMode(PApplet.CORNER);
         }
     }
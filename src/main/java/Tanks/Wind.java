@@ -5,17 +5,21 @@ import processing.core.PImage;
 import java.util.Random;
 
 public class Wind {
-    private PApplet parent;
     private PImage windImageLeft;
     private PImage windImageRight;
     private int windForce;
+    private final HudText windText = new HudText("");
     private Random random;
 
-    public Wind(PApplet p) {
-        parent = p;
-        windImageLeft = parent.loadImage("Tanks/wind-1.png"); // Image for wind blowing left
-        windImageRight = parent.loadImage("Tanks/wind.png"); // Image for wind blowing right
-        random = new Random();
+    public Wind() {
+        this(new Random());
+    }
+
+    /**
+     * @param random source of the starting wind and every later change
+     */
+    public Wind(Random random) {
+        this.random = random;
         initializeWind();
     }
 
@@ -30,7 +34,12 @@ public class Wind {
         // Keep windForce within the bounds
     }
 
-    public void displayWind() {
+    public void displayWind(PApplet parent) {
+        if (windImageLeft == null) {
+            windImageLeft = AssetCache.shared().getImage(parent, "Tanks/wind-1.png"); // Image for wind blowing left
+            windImageRight = AssetCache.shared().getImage(parent, "Tanks/wind.png"); // Image for wind blowing right
+        }
+
         // Display the wind image in the top right corner of the screen
         PImage currentImage = windForce < 0 ? windImageLeft : windImageRight;
         int imageX = parent.width - currentImage.width - 50;
@@ -38,15 +47,18 @@ public class Wind {
         parent.image(currentImage, imageX, imageY);
         
         //Display wind image text
-        String windText = Math.abs(windForce) + ""; // Use absolute value to remove the negative sign
         int textX = parent.width - currentImage.width + 30; 
         int textY = imageY + currentImage.height - 40;
         parent.fill(0);
         parent.textSize(12);
-        parent.text(windText, textX, textY);
+        parent.text(windText.of(Math.abs(windForce)), textX, textY); // Absolute value, the image shows the direction
     }
     
 
+    void setWindForce(int windForce) {
+        this.windForce = windForce;
+    }
+
     public int getWindForce() {
         return windForce;
     }
@@ -0,0 +1,60 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+import processing.core.PImage;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssetCacheTest {
+
+    // PApplet refuses to load files before setup(), so decode straight from the classpath instead
+    private final PApplet app = new PApplet() {
+        @Override
+        public PImage loadImage(String path) {
+            try {
+                return new PImage(ImageIO.read(getClass().getResource("/" + path)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    @Test
+    public void sameImageIsDecodedOnce() {
+        AssetCache cache = new AssetCache(Long.MAX_VALUE);
+
+        PImage first = cache.getImage(app, "Tanks/fuel.png");
+        PImage second = cache.getImage(app, "Tanks/fuel.png");
+
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals(0.5, cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void scaledCopiesLeaveTheOriginalAlone() {
+        AssetCache cache = new AssetCache(Long.MAX_VALUE);
+        PImage original = cache.getImage(app, "Tanks/fuel.png");
+        int width = original.width;
+
+        PImage scaled = cache.getImage(app, "Tanks/fuel.png", width / 10, 0);
+
+        assertEquals(width / 10, scaled.width);
+        assertEquals(width, original.width);
+    }
+
+    @Test
+    public void leastRecentlyUsedImagesAreEvictedOverBudget() {
+        AssetCache cache = new AssetCache(1); // Smaller than any image, so only the newest is kept
+
+        PImage fuel = cache.getImage(app, "Tanks/fuel.png");
+        cache.getImage(app, "Tanks/wind.png");
+
+        assertNotSame(fuel, cache.getImage(app, "Tanks/fuel.png"));
+    }
+}
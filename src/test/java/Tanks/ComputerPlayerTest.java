@@ -0,0 +1,34 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComputerPlayerTest {
+
+    @Test
+    public void computerTankPlaysItsTurnThroughActions() {
+        Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT);
+        Tank tank = simulation.getCurrentTank();
+        ComputerPlayer computer = new ComputerPlayer(Set.of(tank.getIdentifier()), 0, true);
+
+        for (int tick = 0; tick < 20 * Simulation.TICK_RATE && simulation.getCurrentTank() == tank; tick++) {
+            EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+            assertTrue(computer.act(simulation, actions));
+            simulation.step(actions);
+        }
+
+        assertNotSame(tank, simulation.getCurrentTank()); // It fired, passing the turn on
+        assertFalse(computer.act(simulation, EnumSet.noneOf(Action.class))); // The next tank is not the computer's
+    }
+
+    @Test
+    public void searchFindsAShotThatHitsAnotherTank() {
+        Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT);
+        ShotPlan plan = ComputerPlayer.plan(simulation, simulation.getCurrentTank(), 0);
+        assertTrue(plan.getScore() > 0, "score " + plan.getScore());
+    }
+}
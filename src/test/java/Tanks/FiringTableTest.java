@@ -0,0 +1,48 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FiringTableTest {
+
+    private Terrain flatTerrain() {
+        Terrain terrain = new Terrain(App.WIDTH, App.HEIGHT, 0);
+        int[] heights = new int[App.WIDTH / 32 + 1];
+        Arrays.fill(heights, 5); // Surface at y = 480
+        terrain.loadHeights(heights);
+        return terrain;
+    }
+
+    @Test
+    public void solutionsLandOnTheTarget() {
+        Terrain terrain = flatTerrain();
+        FiringTable table = new FiringTable(terrain, 200, 480);
+
+        FiringTable.Solution solution = table.solve(520, 17, 100);
+
+        assertNotNull(solution);
+        TrajectoryPreview shot = new TrajectoryPreview();
+        shot.trace(terrain, 200, 480, solution.getAngle(), Math.round(solution.getPower()), 17);
+        assertTrue(shot.isLanded());
+        assertEquals(520, shot.getEndX(), 10); // Power is whole numbers in the game, so allow a little spread
+    }
+
+    @Test
+    public void cratersOnlyRebuildTheArcsOverThem() {
+        Terrain terrain = flatTerrain();
+        FiringTable table = new FiringTable(terrain, 200, 480);
+        float before = table.getLandingX(40, 50, 0);
+
+        terrain.destroyTerrain(before, 480, 30, null);
+        float after = table.getLandingX(40, 50, 0);
+
+        TrajectoryPreview shot = new TrajectoryPreview();
+        shot.trace(terrain, 200, 480, 40, 50, 0);
+        assertEquals(shot.getEndX(), after, 0.001f);
+        assertNotEquals(before, after); // The shell now falls further into the crater
+        assertTrue(table.getRebuiltCount() > 0);
+    }
+}
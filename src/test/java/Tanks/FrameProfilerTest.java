@@ -0,0 +1,73 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameProfilerTest {
+
+    @Test
+    public void histogramPercentilesAreWithinAnEighth() throws Exception {
+        FrameProfiler.Histogram histogram = new FrameProfiler.Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (long nanos = 1; nanos <= 100_000; nanos++) {
+                    histogram.record(nanos * 10);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        long p50 = histogram.getPercentileNanos(0.5), p99 = histogram.getPercentileNanos(0.99);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 9 / 8, "p50 " + p50);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 9 / 8, "p99 " + p99);
+
+        FrameProfiler.Histogram.Summary summary = histogram.drain();
+        assertEquals(400_000, summary.getCount());
+        assertEquals(p99, summary.getP99Nanos());
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(0.5));
+    }
+
+    @Test
+    public void profileAndHitchesAreWrittenAsCsv(@TempDir Path directory) throws Exception {
+        FrameProfiler profiler = new FrameProfiler(100); // A hitch is any frame over 30 ms
+        profiler.start(directory.toString(), 3600);
+        Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT, 1);
+        simulation.setProfiler(profiler);
+        for (int frame = 0; frame < 30; frame++) {
+            profiler.begin(FrameProfiler.Phase.FRAME);
+            profiler.begin(FrameProfiler.Phase.SIMULATION);
+            simulation.step();
+            profiler.end(FrameProfiler.Phase.SIMULATION);
+            if (frame == 10) {
+                profiler.begin(FrameProfiler.Phase.TERRAIN);
+                Thread.sleep(40);
+                profiler.end(FrameProfiler.Phase.TERRAIN);
+            }
+            profiler.endFrame();
+        }
+        assertEquals(30, profiler.getHistogram(FrameProfiler.Phase.TANK_SETTLE).getCount());
+        profiler.close();
+
+        List<String> summary = Files.readAllLines(profiler.getFiles()[0]);
+        assertEquals("time_ms,phase,count,mean_us,p50_us,p99_us,max_us", summary.get(0));
+        assertTrue(summary.stream().anyMatch(row -> row.contains(",frame,30,")), summary.toString());
+        assertTrue(summary.stream().anyMatch(row -> row.contains(",projectiles,30,")), summary.toString());
+
+        List<String> hitches = Files.readAllLines(profiler.getFiles()[1]);
+        assertEquals(2, hitches.size(), "the one slow frame should be the only hitch");
+        int terrainColumn = List.of(hitches.get(0).split(",")).indexOf("terrain_us");
+        assertTrue(Long.parseLong(hitches.get(1).split(",")[terrainColumn]) >= 40_000);
+    }
+}
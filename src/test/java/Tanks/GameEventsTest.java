@@ -0,0 +1,74 @@
+package Tanks;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameEventsTest {
+
+    @Test
+    public void matchIsRecordedByFlightRecorder(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("match.jfr");
+        int ticks = 0;
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("tanks.Tick", "tanks.TurnChange", "tanks.Explosion", "tanks.LevelLoad", "tanks.LevelStart")) {
+                recording.enable(name);
+            }
+            recording.start();
+            Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT, 5);
+            Player player = new RandomPlayer(Set.of('A', 'B', 'C', 'D', 'E'), 5);
+            for (; ticks < 1500 && !simulation.isGameOver(); ticks++) {
+                EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+                player.act(simulation, actions);
+                simulation.step(actions);
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> tickEvents = ofType(events, "tanks.Tick");
+        assertEquals(ticks, tickEvents.size());
+        // Events are not stored in the order they happened
+        assertEquals(ticks, tickEvents.stream().mapToLong(event -> event.getLong("tick")).max().getAsLong());
+
+        assertFalse(ofType(events, "tanks.LevelLoad").isEmpty());
+        RecordedEvent start = ofType(events, "tanks.LevelStart").get(0);
+        assertTrue(start.getInt("tanks") > 0);
+
+        List<RecordedEvent> turns = ofType(events, "tanks.TurnChange");
+        assertFalse(turns.isEmpty(), "a shot should have ended at least one turn");
+        assertNotEquals(turns.get(0).getChar("previousTank"), turns.get(0).getChar("nextTank"));
+
+        List<RecordedEvent> explosions = ofType(events, "tanks.Explosion");
+        assertFalse(explosions.isEmpty());
+        int craters = 0;
+        for (RecordedEvent explosion : explosions) {
+            int first = explosion.getInt("firstColumn"), last = explosion.getInt("lastColumn");
+            if (first >= 0) {
+                // The columns the terrain reported changing, which lie within the blast
+                craters++;
+                float x = explosion.getFloat("x"), radius = explosion.getFloat("radius");
+                assertTrue(x - radius <= first && first <= last && last <= x + radius, first + ".." + last + " around " + x);
+            } else {
+                assertEquals(-1, last);
+            }
+            assertTrue(explosion.getInt("tanksHit") >= 0);
+        }
+        assertTrue(craters > 0, "some shell should have cratered the ground");
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,54 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameMetricsTest {
+
+    @Test
+    public void metricsAreReadableOverJmx() throws Exception {
+        GameMetrics metrics = GameMetrics.shared();
+        long levelLoads = metrics.getLevelLoads();
+        Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT, 3);
+        assertEquals(levelLoads + 1, metrics.getLevelLoads());
+        metrics.register();
+        metrics.register(); // A second game in the same process shares the registration
+        metrics.watch(simulation);
+        try {
+            long ticks = metrics.getTickCount();
+            for (int i = 0; i < 100; i++) {
+                long start = System.nanoTime();
+                simulation.step();
+                metrics.recordTick(System.nanoTime() - start);
+            }
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(GameMetrics.OBJECT_NAME);
+            assertEquals(ticks + 100, server.getAttribute(name, "TickCount"));
+            assertTrue((Double) server.getAttribute(name, "TickMaxMicros") > 0);
+            assertTrue((Double) server.getAttribute(name, "TickP99Micros") >= (Double) server.getAttribute(name, "TickP50Micros"));
+            assertTrue((Integer) server.getAttribute(name, "Tanks") >= simulation.getTanks().size());
+            assertTrue((Integer) server.getAttribute(name, "Trees") >= simulation.getTrees().size());
+            assertTrue((Double) server.getAttribute(name, "LastLevelLoadMillis") > 0);
+
+            // Maps come through JMX as tables of key and value rows
+            TabularData allocated = (TabularData) server.getAttribute(name, "ThreadAllocatedBytes");
+            String thisThread = Thread.currentThread().getName() + " #" + Thread.currentThread().getId();
+            CompositeData row = allocated.get(new Object[]{thisThread});
+            assertNotNull(row, "the test's own thread should be listed");
+            assertTrue((Long) row.get("value") > 0);
+
+            server.invoke(name, "resetTickStats", null, null);
+            assertEquals(0.0, server.getAttribute(name, "TickMaxMicros"));
+        } finally {
+            metrics.unwatch(simulation);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameServerTest {
+
+    private static void waitUntilIdle(GameServer server, String room) throws InterruptedException {
+        for (int i = 0; i < 500 && server.getRoom(room).isTicking(); i++) {
+            Thread.sleep(20);
+        }
+        assertFalse(server.getRoom(room).isTicking(), room + " should stop ticking once settled");
+    }
+
+    @Test
+    public void roomTicksWhileShellFliesThenIdles() throws Exception {
+        try (GameServer server = new GameServer(0, "config.json", 2)) {
+            Thread io = new Thread(() -> {
+                try {
+                    server.run();
+                } catch (Exception e) {
+                    // Closed
+                }
+            });
+            io.setDaemon(true);
+            io.start();
+
+            try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                out.println("JOIN arena ABCDEFGHIJ");
+                assertTrue(in.readLine().startsWith("JOINED arena "));
+                assertTrue(in.readLine().startsWith("STATE "));
+                waitUntilIdle(server, "arena");
+
+                long ticksBefore = server.getRoom("arena").getStats().getCount();
+                out.println("PRESS FIRE");
+                boolean sawShell = false;
+                for (String line; !sawShell && (line = in.readLine()) != null; ) {
+                    sawShell = line.startsWith("STATE ") && line.contains(" shell:");
+                }
+                assertTrue(sawShell, "a fired shell should be broadcast");
+                waitUntilIdle(server, "arena");
+                assertTrue(server.getRoom("arena").getStats().getCount() > ticksBefore + 1);
+
+                out.println("DOWN SIDEWAYS");
+                for (String line; (line = in.readLine()) != null; ) {
+                    if (line.startsWith("ERROR")) {
+                        break;
+                    }
+                }
+                out.println("QUIT");
+                while (in.readLine() != null) {
+                    // Until the server hangs up
+                }
+            }
+            for (int i = 0; i < 100 && server.getRoomCount() > 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, server.getRoomCount(), "the room should close when its last client leaves");
+        }
+    }
+
+    @Test
+    public void spectatorReceivesTheFeed() throws Exception {
+        try (GameServer server = new GameServer(0, "config.json", 2)) {
+            Thread io = new Thread(() -> {
+                try {
+                    server.run();
+                } catch (Exception e) {
+                    // Closed
+                }
+            });
+            io.setDaemon(true);
+            io.start();
+
+            try (Socket player = new Socket("127.0.0.1", server.getPort());
+                 Socket spectator = new Socket("127.0.0.1", server.getPort())) {
+                PrintWriter playerOut = new PrintWriter(player.getOutputStream(), true, StandardCharsets.UTF_8);
+                playerOut.println("JOIN show ABCDEFGHIJ");
+                new PrintWriter(spectator.getOutputStream(), true, StandardCharsets.UTF_8).println("WATCH show");
+                DataInputStream in = new DataInputStream(spectator.getInputStream());
+                StringBuilder reply = new StringBuilder();
+                for (int c; (c = in.read()) != '\n'; ) {
+                    reply.append((char) c);
+                }
+                assertEquals("WATCHING show", reply.toString());
+
+                playerOut.println("PRESS FIRE");
+                SpectatorState state = new SpectatorState();
+                while (state.getShells().isEmpty()) {
+                    int length = in.readInt();
+                    ByteBuffer frame = ByteBuffer.allocate(length).putInt(length);
+                    in.readFully(frame.array(), 4, length - 4);
+                    frame.clear();
+                    state.apply(frame);
+                }
+                assertTrue(state.isStarted());
+                assertEquals(server.getRoom("show").getSimulation().getTerrain().getWidth(), state.getColumns());
+            }
+        }
+    }
+
+    @Test
+    public void idleRoomsStopTicking() throws Exception {
+        try (GameServer server = new GameServer(0, "config.json", 2)) {
+            Thread io = new Thread(() -> {
+                try {
+                    server.run();
+                } catch (Exception e) {
+                    // Closed
+                }
+            });
+            io.setDaemon(true);
+            io.start();
+
+            List<Socket> sockets = new ArrayList<>();
+            int rooms = 20;
+            for (int i = 0; i < rooms; i++) {
+                Socket socket = new Socket("127.0.0.1", server.getPort());
+                sockets.add(socket);
+                new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8).println("JOIN room" + i + " A");
+            }
+            for (int i = 0; i < 500 && server.getRoomCount() < rooms; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(rooms, server.getRoomCount());
+            for (int i = 0; i < rooms; i++) {
+                waitUntilIdle(server, "room" + i);
+            }
+            List<String> report = server.report();
+            assertTrue(report.get(report.size() - 1).startsWith("TOTAL " + rooms + " rooms, 0 ticking"), report.get(report.size() - 1));
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void linesAfterQuitAreIgnored() throws Exception {
+        try (GameServer server = new GameServer(0, "config.json", 2)) {
+            Thread io = new Thread(() -> {
+                try {
+                    server.run();
+                } catch (Exception e) {
+                    // Closed
+                }
+            });
+            io.setDaemon(true);
+            io.start();
+
+            try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                // All in one packet, so the server reads the JOIN after the QUIT in the same go
+                socket.getOutputStream().write("JOIN lobby A\nQUIT\nJOIN lobby B\n".getBytes(StandardCharsets.UTF_8));
+                InputStream in = socket.getInputStream();
+                while (in.read() >= 0) {
+                    // Until the server hangs up
+                }
+            }
+            try (Socket other = new Socket("127.0.0.1", server.getPort())) {
+                // Served after the IO thread has finished with everything the first client sent
+                new PrintWriter(other.getOutputStream(), true, StandardCharsets.UTF_8).println("STATS");
+                String total = new BufferedReader(new InputStreamReader(other.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                assertTrue(total.startsWith("TOTAL 0 rooms"), "a client that quit should not be back in a room: " + total);
+            }
+            assertEquals(0, server.getRoomCount());
+        }
+    }
+
+    @Test
+    public void clientThatStopsReadingIsNotQueuedForWithoutEnd() throws Exception {
+        try (GameServer server = new GameServer(0, "config.json", 1);
+             SocketChannel channel = SocketChannel.open()) {
+            GameServer.Client client = new GameServer.Client(channel, server);
+            for (int i = 0; i < 2 * GameServer.MAX_QUEUED; i++) {
+                client.send("STATE " + i);
+            }
+            assertEquals(GameServer.MAX_QUEUED, client.outbox.size());
+            assertTrue(client.tooSlow, "the client should be marked for disconnecting");
+        }
+    }
+}
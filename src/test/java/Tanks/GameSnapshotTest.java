@@ -0,0 +1,105 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameSnapshotTest {
+
+    /**
+     * Everything a player could notice about the match, as text so a mismatch shows where it is.
+     */
+    private static String describe(Simulation simulation) {
+        StringBuilder state = new StringBuilder();
+        state.append("level ").append(simulation.getConfig().getCurrentLevelIndex())
+                .append(" tick ").append(simulation.getTick()).append(" wind ").append(simulation.getWind().getWindForce())
+                .append(" shells ").append(simulation.getProjectiles().size())
+                .append(" explosions ").append(simulation.getExplosions().size())
+                .append(" terrain ").append(Arrays.hashCode(simulation.getTerrain().getPixelHeights()))
+                .append(" trees ").append(simulation.getTrees().size())
+                .append(" gameOver ").append(simulation.isGameOver()).append('\n');
+        for (Tank tank : simulation.getTanks()) {
+            state.append(tank.getIdentifier()).append(" x ").append(tank.getX()).append(" y ").append(tank.getY())
+                    .append(" health ").append(tank.getHealth()).append(" power ").append(tank.getPower())
+                    .append(" fuel ").append(tank.getFuel()).append(" active ").append(tank.isActive())
+                    .append(" score ").append(simulation.getScoreboard().getScore(tank.getIdentifier())).append('\n');
+        }
+        for (int i = 0; i < simulation.getProjectiles().size(); i++) {
+            state.append("shell ").append(simulation.getProjectiles().getX(i)).append(',').append(simulation.getProjectiles().getY(i)).append('\n');
+        }
+        return state.toString();
+    }
+
+    /**
+     * Plays a match with computer players, snapshots it on the first tick the condition holds, plays on through
+     * at least one level change and then checks that restoring and stepping the same actions ends up the same.
+     */
+    private static void assertReplaysFromSnapshot(long seed, Predicate<Simulation> snapshotWhen) {
+        Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT, seed);
+        Player[] players = {new ComputerPlayer(Set.of('A', 'B', 'C', 'D'), 8000, true)};
+        GameSnapshot snapshot = null;
+        ArrayList<EnumSet<Action>> played = new ArrayList<>();
+        int levelsCrossed = 0;
+
+        for (int tick = 0; tick < 120 * Simulation.TICK_RATE && !simulation.isGameOver(); tick++) {
+            EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+            players[0].act(simulation, actions);
+            if (snapshot == null && snapshotWhen.test(simulation)) {
+                snapshot = simulation.snapshot();
+            }
+            if (snapshot != null) {
+                played.add(actions);
+            }
+            Terrain before = simulation.getTerrain();
+            simulation.step(actions);
+            if (snapshot != null && simulation.getTerrain() != before) {
+                levelsCrossed++;
+            }
+        }
+        assertNotNull(snapshot, "seed " + seed);
+        assertTrue(levelsCrossed > 0, "seed " + seed);
+        String expected = describe(simulation);
+
+        simulation.restore(snapshot);
+        assertEquals(snapshot.getTick(), simulation.getTick());
+        for (EnumSet<Action> actions : played) {
+            simulation.step(actions);
+        }
+        assertEquals(expected, describe(simulation), "seed " + seed);
+    }
+
+    @Test
+    public void restoredMatchPlaysOutTheSameAgain() {
+        // Snapshot once the first shell is in the air
+        assertReplaysFromSnapshot(3, simulation -> simulation.getProjectiles().size() > 0);
+    }
+
+    @Test
+    public void restoreDuringLevelTransitionPlaysOutTheSameAgain() {
+        // Snapshot while the next level is loading, so the level is started twice
+        for (long seed = 1; seed <= 5; seed++) {
+            assertReplaysFromSnapshot(seed, simulation -> simulation.getPendingLevelIndex() >= 0);
+        }
+    }
+
+    @Test
+    public void seededRandomMatchesJavaUtilRandom() {
+        Random reference = new Random(99);
+        SeededRandom random = new SeededRandom(99);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(reference.nextInt(71), random.nextInt(71));
+        }
+        long state = random.getState();
+        int next = random.nextInt();
+        random.nextInt();
+        random.setState(state);
+        assertEquals(next, random.nextInt());
+    }
+}
@@ -0,0 +1,52 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LevelTest {
+
+    @Test
+    public void spawnPointsComeFromTheLevelsOwnLayout() throws Exception {
+        GameConfig config = new GameConfig("config.json");
+
+        Future<Level> pending = LevelLoader.prepare(config, 1, App.WIDTH, App.HEIGHT); // level2.txt
+        Level level = pending.get();
+
+        assertEquals(4, level.getTankCount());
+        assertEquals('A', level.getTankIdentifier(0));
+        assertEquals(3 * App.CELLSIZE + App.CELLSIZE / 2.0f, level.getTankX(0));
+        assertEquals(0, level.getTreeCount());
+        assertEquals(App.HEIGHT - 6 * App.CELLHEIGHT, level.getTerrain().getHeightAtX(0), 0.001f);
+        assertEquals(0, level.getTreeHeight(), "level 2 has no tree image");
+        assertEquals(36, Level.load(config, 0, App.WIDTH, App.HEIGHT).getTreeHeight(), "a tenth of the 360 pixel image");
+    }
+
+    @Test
+    public void compiledPackLoadsTheSameLevels() throws Exception {
+        GameConfig config = new GameConfig("config.json");
+        Path pack = Files.createTempFile("levels", ".pack");
+        try {
+            LevelPack.write(config, pack, App.WIDTH, App.HEIGHT);
+            LevelPack levelPack = LevelPack.open(pack);
+
+            assertEquals(config.getLevelCount(), levelPack.getLevelCount());
+            for (int i = 0; i < config.getLevelCount(); i++) {
+                Level fromText = Level.load(config, i, App.WIDTH, App.HEIGHT);
+                Level fromPack = levelPack.load(i, App.WIDTH, App.HEIGHT);
+                assertArrayEquals(fromText.getTerrain().getPixelHeights(), fromPack.getTerrain().getPixelHeights());
+                assertEquals(fromText.getTankCount(), fromPack.getTankCount());
+                assertEquals(fromText.getTreeCount(), fromPack.getTreeCount());
+                assertEquals(config.getBackgroundPath(i), levelPack.getBackgroundPath(i));
+                assertEquals(config.getTreeImagePath(i), levelPack.getTreeImagePath(i));
+                assertEquals(config.getForegroundColour(i), levelPack.getForegroundColour(i));
+            }
+        } finally {
+            Files.delete(pack);
+        }
+    }
+}
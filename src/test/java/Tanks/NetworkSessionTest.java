@@ -0,0 +1,146 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NetworkSessionTest {
+
+    private static String describe(Simulation simulation) {
+        StringBuilder state = new StringBuilder("level " + simulation.getConfig().getCurrentLevelIndex() + " tick " + simulation.getTick()
+                + " wind " + simulation.getWind().getWindForce()
+                + " terrain " + Arrays.hashCode(simulation.getTerrain().getPixelHeights()) + "\n");
+        for (Tank tank : simulation.getTanks()) {
+            state.append(tank.getIdentifier()).append(' ').append(tank.getX()).append(' ').append(tank.getY())
+                    .append(' ').append(tank.getHealth()).append(' ').append(tank.getPower())
+                    .append(' ').append(simulation.getScoreboard().getScore(tank.getIdentifier())).append('\n');
+        }
+        return state.toString();
+    }
+
+    private static NetworkSession[] connect(int peerCount, long seed) throws Exception {
+        List<DatagramChannel> channels = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < peerCount; i++) {
+            DatagramChannel channel = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+            channels.add(channel);
+            addresses.add((InetSocketAddress) channel.getLocalAddress());
+        }
+        NetworkSession[] sessions = new NetworkSession[peerCount];
+        for (int i = 0; i < peerCount; i++) {
+            sessions[i] = new NetworkSession(channels.get(i), i, addresses, new GameConfig("config.json"), seed);
+        }
+        return sessions;
+    }
+
+    /**
+     * @return the tanks peer i plays, as NetworkSession deals them out
+     */
+    private static Set<Character> tanksOf(int i, int peerCount) {
+        Set<Character> tanks = new HashSet<>();
+        for (char id = (char) ('A' + i); id <= 'Z'; id += peerCount) {
+            tanks.add(id);
+        }
+        return tanks;
+    }
+
+    /**
+     * Plays every peer to the given tick, with peers hearing from the network at different rates so their input
+     * reaches each other late, then checks they all ended up with the same match.
+     *
+     * @return how many rollbacks restored a snapshot taken while the next level was loading and replayed the
+     *         level change from it
+     */
+    private static int playAndAgree(NetworkSession[] sessions, Player[] players, int ticks) {
+        long[] loadingFrom = new long[sessions.length], levelChangedAt = new long[sessions.length];
+        Arrays.fill(loadingFrom, -1);
+        Arrays.fill(levelChangedAt, -1);
+        int rollbacksOverLevelChange = 0;
+        int frame = 0;
+        while (frame < 20 * ticks) {
+            frame++;
+            for (int i = 0; i < sessions.length; i++) {
+                // Each peer's bot only sees that peer's possibly predicted match
+                Simulation simulation = sessions[i].getSimulation();
+                if (frame % (1 + 3 * i) == 0) {
+                    long resimulated = sessions[i].getTicksResimulated();
+                    sessions[i].poll();
+                    long rolledBackTo = sessions[i].getTick() - (sessions[i].getTicksResimulated() - resimulated);
+                    if (levelChangedAt[i] >= 0 && loadingFrom[i] < rolledBackTo && rolledBackTo <= levelChangedAt[i]
+                            && rolledBackTo < sessions[i].getTick()) {
+                        rollbacksOverLevelChange++;
+                    }
+                }
+                if (sessions[i].getTick() < ticks && sessions[i].canAdvance()) {
+                    EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+                    players[i].act(simulation, actions);
+                    Terrain before = simulation.getTerrain();
+                    sessions[i].advance(actions);
+                    if (loadingFrom[i] < 0 && simulation.getPendingLevelIndex() >= 0) {
+                        loadingFrom[i] = sessions[i].getTick() - 1;
+                    }
+                    if (simulation.getTerrain() != before) {
+                        levelChangedAt[i] = sessions[i].getTick() - 1;
+                    }
+                }
+            }
+            boolean settled = true;
+            for (NetworkSession session : sessions) {
+                settled &= session.getConfirmedTick() == ticks - 1;
+            }
+            if (settled) {
+                break;
+            }
+        }
+
+        int rollbacks = 0;
+        for (NetworkSession session : sessions) {
+            assertEquals(ticks - 1, session.getConfirmedTick());
+            rollbacks += session.getRollbacks();
+        }
+        assertTrue(rollbacks > 0, "late input should have caused rollbacks");
+        String expected = describe(sessions[0].getSimulation());
+        for (NetworkSession session : sessions) {
+            assertEquals(expected, describe(session.getSimulation()));
+            session.close();
+        }
+        return rollbacksOverLevelChange;
+    }
+
+    @Test
+    public void peersOnLoopbackAgreeDespiteLateInput() throws Exception {
+        int peerCount = 3;
+        NetworkSession[] sessions = connect(peerCount, 5);
+        Player[] players = new Player[peerCount];
+        for (int i = 0; i < peerCount; i++) {
+            players[i] = new RandomPlayer(tanksOf(i, peerCount), i);
+        }
+        playAndAgree(sessions, players, 60 * Simulation.TICK_RATE);
+    }
+
+    @Test
+    public void peersAgreeWhenRollbacksSpanALevelChange() throws Exception {
+        int peerCount = 3;
+        NetworkSession[] sessions = connect(peerCount, 5);
+        Player[] players = new Player[peerCount];
+        for (int i = 0; i < peerCount; i++) {
+            // Computer players to win the level, and random keys while the next one loads so input keeps changing
+            Player computer = new ComputerPlayer(tanksOf(i, peerCount), 2000, true);
+            Player random = new RandomPlayer(tanksOf(i, peerCount), i);
+            players[i] = (simulation, actions) ->
+                    (simulation.getPendingLevelIndex() >= 0 ? random : computer).act(simulation, actions);
+        }
+        int rollbacksOverLevelChange = playAndAgree(sessions, players, 120 * Simulation.TICK_RATE);
+        assertTrue(sessions[0].getSimulation().getConfig().getCurrentLevelIndex() > 0, "the match should reach the next level");
+        assertTrue(rollbacksOverLevelChange > 0, "some rollback should have replayed the level change");
+    }
+}
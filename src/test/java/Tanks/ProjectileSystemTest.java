@@ -0,0 +1,64 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectileSystemTest {
+
+    private Terrain flatTerrain() {
+        Terrain terrain = new Terrain(App.WIDTH, App.HEIGHT, 0);
+        int[] heights = new int[App.WIDTH / 32 + 1];
+        Arrays.fill(heights, 5);
+        terrain.loadHeights(heights);
+        return terrain;
+    }
+
+    @Test
+    public void shellsExplodeOnTheTerrainAndFreeTheirSlot() {
+        Terrain terrain = flatTerrain();
+        Tank shooter = new Tank(400, terrain.getHeightAtX(400), 0, terrain, 'A', new Scoreboard(new GameConfig("config.json")));
+        TankIndex tankIndex = new TankIndex(App.WIDTH);
+        ProjectileSystem projectiles = new ProjectileSystem();
+        ArrayList<Explosion> explosions = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) { // More than the initial capacity, so the arrays have to grow
+            projectiles.spawn(400, 100, 45, 20, 0, shooter);
+        }
+        assertEquals(100, projectiles.size());
+
+        for (int tick = 0; tick < 10 * Simulation.TICK_RATE && projectiles.size() > 0; tick++) {
+            projectiles.update(explosions, terrain, tankIndex);
+        }
+        assertEquals(0, projectiles.size());
+        assertEquals(100, explosions.size());
+        assertTrue(explosions.get(0).getX() > 400); // Fired to the right
+    }
+
+    @Test
+    public void previewLandsWhereTheShellExplodes() {
+        Terrain terrain = flatTerrain();
+        terrain.destroyTerrain(500, 480, 30, null); // Something for the shell to land in
+        Tank shooter = new Tank(300, terrain.getHeightAtX(300), 0, terrain, 'A', new Scoreboard(new GameConfig("config.json")));
+        shooter.rotateTurretRight();
+        Wind wind = new Wind();
+        ProjectileSystem projectiles = new ProjectileSystem();
+        ArrayList<Explosion> explosions = new ArrayList<>();
+
+        TrajectoryPreview preview = new TrajectoryPreview();
+        assertTrue(preview.update(shooter, wind, terrain));
+        assertFalse(preview.update(shooter, wind, terrain)); // Nothing changed, so the arc is reused
+
+        shooter.fire(wind, projectiles);
+        while (projectiles.size() > 0) {
+            projectiles.update(explosions, terrain, new TankIndex(App.WIDTH));
+        }
+        assertTrue(preview.isLanded());
+        assertEquals(1, explosions.size());
+        assertEquals(explosions.get(0).getX(), preview.getEndX(), 0.0001f);
+        assertEquals(explosions.get(0).getY(), preview.getEndY(), 0.0001f);
+    }
+}
@@ -0,0 +1,63 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayTest {
+
+    @Test
+    public void replayPlaysTheRecordedMatchOutIdentically() throws Exception {
+        Simulation live = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT, 42);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReplayRecorder recorder = new ReplayRecorder(bytes, "config.json", live.getSeed(), App.WIDTH, App.HEIGHT);
+        live.setRecorder(recorder);
+
+        Player[] players = {new ComputerPlayer(Set.of('A', 'C'), 2000, true), new RandomPlayer(Set.of('B', 'D'), 7)};
+        for (int tick = 0; tick < 60 * Simulation.TICK_RATE && !live.isGameOver(); tick++) {
+            EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+            for (Player player : players) {
+                if (player.act(live, actions)) {
+                    break;
+                }
+            }
+            live.step(actions);
+        }
+        recorder.setEndTick(live.getTick());
+        recorder.close();
+
+        Simulation replayed = Replay.read(new ByteArrayInputStream(bytes.toByteArray())).playHeadless();
+        assertEquals(live.getTick(), replayed.getTick());
+        assertEquals(live.getWind().getWindForce(), replayed.getWind().getWindForce());
+        assertEquals(live.getTanks().size(), replayed.getTanks().size());
+        for (int i = 0; i < live.getTanks().size(); i++) {
+            Tank expected = live.getTanks().get(i), actual = replayed.getTanks().get(i);
+            assertEquals(expected.getIdentifier(), actual.getIdentifier());
+            assertEquals(expected.getX(), actual.getX());
+            assertEquals(expected.getHealth(), actual.getHealth());
+            assertEquals(live.getScoreboard().getScore(expected.getIdentifier()), replayed.getScoreboard().getScore(actual.getIdentifier()));
+        }
+        assertTrue(bytes.size() < live.getTick(), bytes.size() + " bytes for " + live.getTick() + " ticks");
+    }
+
+    @Test
+    public void cutShortReplayPlaysUpToItsLastRecord() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReplayRecorder recorder = new ReplayRecorder(bytes, "config.json", 1, App.WIDTH, App.HEIGHT);
+        recorder.record(10, EnumSet.of(Action.POWER_UP));
+        recorder.record(11, EnumSet.of(Action.POWER_UP));
+        recorder.record(300, EnumSet.of(Action.FIRE));
+        // Never closed, as if the game had crashed
+
+        Replay replay = Replay.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(301, replay.getEndTick());
+        Simulation simulation = replay.playHeadless();
+        assertEquals(301, simulation.getTick());
+        assertEquals(52, simulation.getTanks().get(0).getPower());
+    }
+}
@@ -0,0 +1,40 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScoreboardTest {
+
+    @Test
+    public void hudRowsAreKeptUntilSomethingChanges() {
+        Scoreboard scoreboard = new Scoreboard(new GameConfig("config.json"));
+        scoreboard.registerTank('B', 0x112233);
+        scoreboard.registerTank('F'); // "random" in config.json
+        scoreboard.registerTank('A', 0x445566);
+
+        Scoreboard.Row[] rows = scoreboard.getRows();
+        assertEquals('A', rows[0].getPlayerID());
+        assertEquals(0x445566, rows[0].getColour());
+        assertEquals('F', rows[2].getPlayerID());
+        String text = scoreboard.getText(rows[0]);
+        assertEquals("Player A: 0", text);
+
+        int randomColour = rows[2].getColour();
+        for (int frame = 0; frame < 10; frame++) {
+            assertSame(rows, scoreboard.getRows());
+            assertSame(text, scoreboard.getText(rows[0]));
+            assertEquals(randomColour, scoreboard.getRows()[2].getColour(), "a random colour is picked once");
+        }
+
+        scoreboard.updateScore('A', 15);
+        assertEquals("Player A: 15", scoreboard.getText(rows[0]));
+
+        scoreboard.registerTank('B', 0x778899); // A new level gave the tank a new colour
+        assertEquals(0x778899, scoreboard.getRows()[1].getColour());
+
+        scoreboard.updateScore('F', 30);
+        scoreboard.rankFinalScores();
+        assertArrayEquals(new String[]{"Player F: 30", "Player A: 15", "Player B: 0"}, scoreboard.getFinalScoreTexts());
+    }
+}
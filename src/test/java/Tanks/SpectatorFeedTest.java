@@ -0,0 +1,214 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpectatorFeedTest {
+
+    private static void assertMatches(Simulation simulation, SpectatorState state) {
+        assertTrue(state.isStarted());
+        assertEquals(simulation.getWind().getWindForce(), state.getWind());
+        assertEquals(simulation.getCurrentTank().getIdentifier(), state.getCurrentTank());
+        assertEquals(simulation.getTanks().size(), state.getTanks().size());
+        for (Tank tank : simulation.getTanks()) {
+            SpectatorState.TankState seen = state.getTank(tank.getIdentifier());
+            assertEquals(Math.round(tank.getX()), seen.getX());
+            assertEquals(Math.round(tank.getY()), seen.getY());
+            assertEquals(tank.getHealth(), seen.getHealth());
+            assertEquals(tank.getPower(), seen.getPower());
+            assertEquals(tank.getFuel(), seen.getFuel());
+            assertEquals(simulation.getScoreboard().getScore(tank.getIdentifier()), state.getScore(tank.getIdentifier()));
+        }
+        assertEquals(simulation.getTerrain().getWidth(), state.getColumns());
+        for (int x = 0; x < state.getColumns(); x++) {
+            assertEquals(Math.round(simulation.getTerrain().getHeightAtX(x)), state.getSurface(x), "column " + x);
+        }
+        assertEquals(simulation.getProjectiles().size(), state.getShells().size());
+        assertEquals(simulation.getExplosions().size(), state.getExplosionCount());
+    }
+
+    /**
+     * Plays a match with random players, letting the subscriber send whatever it has every so many ticks.
+     */
+    private static SpectatorState watch(int capacity, int sendEvery, int ticks, SpectatorFeed.Subscriber[] subscriberOut) throws Exception {
+        Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT, 11);
+        SpectatorFeed feed = new SpectatorFeed(simulation, capacity);
+        Player player = new RandomPlayer(Set.of('A', 'B', 'C', 'D', 'E'), 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(bytes);
+        SpectatorFeed.Subscriber subscriber = feed.subscribe();
+        subscriberOut[0] = subscriber;
+        SpectatorState state = new SpectatorState();
+
+        for (int tick = 1; tick <= ticks && !simulation.isGameOver(); tick++) {
+            EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+            player.act(simulation, actions);
+            simulation.step(actions);
+            feed.publish();
+            if (tick % sendEvery == 0) {
+                assertTrue(subscriber.writeTo(channel));
+                ByteBuffer received = ByteBuffer.wrap(bytes.toByteArray());
+                state.applyAll(received);
+                assertFalse(received.hasRemaining(), "only whole frames should have been sent");
+                bytes.reset();
+                assertMatches(simulation, state);
+            }
+        }
+        return state;
+    }
+
+    @Test
+    public void deltasRebuildTheMatch() throws Exception {
+        SpectatorFeed.Subscriber[] subscriber = new SpectatorFeed.Subscriber[1];
+        SpectatorState state = watch(1 << 18, 1, 40 * Simulation.TICK_RATE, subscriber);
+        assertEquals(0, subscriber[0].getSkips());
+        assertTrue(state.getTick() > 0);
+    }
+
+    @Test
+    public void slowSpectatorSkipsToAKeyframe() throws Exception {
+        SpectatorFeed.Subscriber[] subscriber = new SpectatorFeed.Subscriber[1];
+        SpectatorState state = watch(1 << 14, 20 * Simulation.TICK_RATE, 60 * Simulation.TICK_RATE, subscriber);
+        assertTrue(subscriber[0].getSkips() > 0, "a 16 KB feed should have been lapped");
+        assertTrue(state.getKeyframes() > 1);
+    }
+
+    @Test
+    public void hundredsOfShellsAreCounted() throws Exception {
+        Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT, 11);
+        SpectatorFeed feed = new SpectatorFeed(simulation, 1 << 18);
+        SpectatorFeed.Subscriber subscriber = feed.subscribe();
+        Tank tank = simulation.getTanks().get(0);
+        for (int i = 0; i < 300; i++) {
+            simulation.getProjectiles().spawn(i * 2, 10, 0, 50, 0, tank);
+        }
+        feed.publish();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        subscriber.writeTo(Channels.newChannel(bytes));
+        SpectatorState state = new SpectatorState();
+        state.applyAll(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals(300, state.getShells().size());
+        assertEquals(Math.round(simulation.getProjectiles().getX(299)), state.getShells().get(299)[0]);
+    }
+
+    /**
+     * A channel that takes only a few bytes at a time, keeping what it was given since the last commit apart so
+     * that bytes sent by a call that then fails can be thrown away.
+     */
+    private static class TrickleChannel implements WritableByteChannel {
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = Math.min(source.remaining(), 4);
+            for (int i = 0; i < length; i++) {
+                pending.write(source.get());
+                Thread.onSpinWait(); // Read slowly, to stay inside the frame the publisher is overwriting
+            }
+            return length;
+        }
+
+        byte[] take() {
+            byte[] bytes = pending.toByteArray();
+            pending.reset();
+            return bytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void lappedSpectatorNeverGetsATornFrame() throws Exception {
+        Simulation simulation = new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT, 11);
+        SpectatorFeed feed = new SpectatorFeed(simulation, 1 << 14);
+        Player player = new RandomPlayer(Set.of('A', 'B', 'C', 'D', 'E'), 3);
+        Map<Integer, byte[]> published = new ConcurrentHashMap<>(); // Every frame, by tick
+        AtomicBoolean done = new AtomicBoolean();
+
+        // The tick thread publishes, recording each frame through a subscriber that is never behind
+        SpectatorFeed.Subscriber recorder = feed.subscribe();
+        ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+        WritableByteChannel recorderChannel = Channels.newChannel(recorded);
+        Thread ticks = new Thread(() -> {
+            try {
+                for (int tick = 1; tick <= 120 * Simulation.TICK_RATE && !simulation.isGameOver(); tick++) {
+                    EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+                    player.act(simulation, actions);
+                    simulation.step(actions);
+                    feed.publish();
+                    recorder.writeTo(recorderChannel);
+                    ByteBuffer frames = ByteBuffer.wrap(recorded.toByteArray());
+                    while (frames.hasRemaining()) {
+                        byte[] frame = new byte[SpectatorState.frameLength(frames)];
+                        frames.get(frame);
+                        published.put(ByteBuffer.wrap(frame).getInt(5), frame);
+                    }
+                    recorded.reset();
+                    LockSupport.parkNanos(50_000);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                done.set(true);
+            }
+        });
+
+        // Meanwhile the IO thread trickles the feed out, resubscribing whenever it is lapped mid-frame
+        ticks.start();
+        Map<Integer, byte[]> received = new HashMap<>();
+        int laps = 0;
+        TrickleChannel channel = new TrickleChannel();
+        SpectatorFeed.Subscriber subscriber = feed.subscribe();
+        ByteBuffer frames = ByteBuffer.allocate(1 << 16);
+        while (!done.get()) {
+            try {
+                subscriber.writeTo(channel);
+            } catch (IOException lapped) {
+                laps++;
+                channel.take();
+                frames.clear();
+                subscriber = feed.subscribe();
+                continue;
+            }
+            frames.put(channel.take()).flip();
+            int length;
+            while ((length = SpectatorState.frameLength(frames)) > 0 && frames.remaining() >= length) {
+                byte[] frame = new byte[length];
+                frames.get(frame);
+                received.put(ByteBuffer.wrap(frame).getInt(5), frame);
+            }
+            frames.compact();
+            LockSupport.parkNanos(50_000);
+        }
+        ticks.join();
+
+        assertTrue(laps > 0, "the spectator should have been lapped in the middle of a frame");
+        assertFalse(received.isEmpty());
+        for (Map.Entry<Integer, byte[]> frame : received.entrySet()) {
+            assertTrue(Arrays.equals(published.get(frame.getKey()), frame.getValue()), "frame of tick " + frame.getKey());
+        }
+    }
+}
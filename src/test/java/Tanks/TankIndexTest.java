@@ -0,0 +1,45 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TankIndexTest {
+
+    private Tank tankAt(Terrain terrain, Scoreboard scoreboard, char identifier, float x) {
+        return new Tank(x, terrain.getHeightAtX(x), 0, terrain, identifier, scoreboard);
+    }
+
+    @Test
+    public void queryOnlyReturnsTanksInNearbyBuckets() {
+        Terrain terrain = new Terrain(App.WIDTH, App.HEIGHT, 0);
+        Scoreboard scoreboard = new Scoreboard(new GameConfig("config.json"));
+        Tank near = tankAt(terrain, scoreboard, 'A', 100);
+        Tank far = tankAt(terrain, scoreboard, 'B', 700);
+        TankIndex index = new TankIndex(App.WIDTH);
+        index.add(near);
+        index.add(far);
+
+        ArrayList<Tank> found = index.query(70, 130);
+        assertTrue(found.contains(near));
+        assertFalse(found.contains(far));
+
+        far.setX(110);
+        index.update(far);
+        assertTrue(index.query(70, 130).contains(far));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void fastSegmentThroughATankHitsIt() {
+        Terrain terrain = new Terrain(App.WIDTH, App.HEIGHT, 0);
+        Tank tank = tankAt(terrain, new Scoreboard(new GameConfig("config.json")), 'A', 400);
+        float y = tank.getY();
+
+        // Both ends are outside the hull, so a point test at the end of the tick would miss it
+        assertEquals(0.425f, tank.hitTime(300, y, 500, y), 0.001f); // Enters the hull at x = 385
+        assertEquals(-1, tank.hitTime(300, y - 100, 500, y - 100));
+    }
+}
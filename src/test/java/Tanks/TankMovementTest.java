@@ -0,0 +1,44 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TankMovementTest {
+
+    private Simulation newSimulation() {
+        return new Simulation(new GameConfig("config.json"), App.WIDTH, App.HEIGHT);
+    }
+
+    @Test
+    public void moveRightUsesFuelAndStaysOnTerrain() {
+        Simulation simulation = newSimulation();
+        Tank tank = simulation.getCurrentTank();
+        float startX = tank.getX();
+
+        simulation.apply(Action.MOVE_RIGHT);
+
+        assertEquals(startX + 2, tank.getX(), 0.001f); // 60 pixels per second at 30 ticks per second
+        assertTrue(tank.getY() <= simulation.getTerrain().getHeightAtX(tank.getX()));
+    }
+
+    @Test
+    public void firingPassesTheTurnToTheNextTank() {
+        Simulation simulation = newSimulation();
+        Tank first = simulation.getCurrentTank();
+
+        simulation.apply(Action.FIRE);
+
+        assertNotSame(first, simulation.getCurrentTank());
+        assertTrue(simulation.getCurrentTank().isActive());
+    }
+
+    @Test
+    public void simulationRunsWithoutAWindow() {
+        Simulation simulation = newSimulation();
+        for (int i = 0; i < 10 * Simulation.TICK_RATE; i++) {
+            simulation.step();
+        }
+        assertEquals(10 * Simulation.TICK_RATE, simulation.getTick());
+    }
+}
@@ -0,0 +1,61 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerrainTest {
+
+    private Terrain flatTerrain() {
+        Terrain terrain = new Terrain(App.WIDTH, App.HEIGHT, 0);
+        int[] heights = new int[28];
+        Arrays.fill(heights, 5); // Surface at y = 640 - 5 * 32 = 480
+        terrain.loadHeights(heights);
+        return terrain;
+    }
+
+    @Test
+    public void explosionCarvesCircularCrater() {
+        Terrain terrain = flatTerrain();
+
+        terrain.destroyTerrain(400, 480, 30, null);
+
+        assertEquals(510, terrain.getHeightAtX(400), 0.001f); // Centre drops by the radius
+        assertEquals(480 + (float) Math.sqrt(30 * 30 - 20 * 20), terrain.getHeightAtX(420), 0.001f);
+        assertEquals(480, terrain.getHeightAtX(431), 0.001f); // Outside the circle is untouched
+    }
+
+    @Test
+    public void listenersOnlySeeTheChangedColumns() {
+        Terrain terrain = flatTerrain();
+        int[] range = new int[2];
+        terrain.addListener((first, last) -> {
+            range[0] = first;
+            range[1] = last;
+        });
+        int version = terrain.getVersion();
+
+        terrain.destroyTerrain(400, 480, 30, null);
+
+        assertEquals(371, range[0]);
+        assertEquals(429, range[1]);
+        assertNotEquals(version, terrain.getVersion());
+    }
+
+    @Test
+    public void sweptContactFindsThinRidgesAndTheExactSurface() {
+        Terrain terrain = new Terrain(App.WIDTH, App.HEIGHT, 0);
+        float[] heights = new float[App.WIDTH];
+        Arrays.fill(heights, 160); // Surface at y = 480
+        heights[400] = heights[401] = 400; // A two pixel spike up to y = 240
+        terrain.loadPixelHeights(heights);
+
+        // Both ends are in the air either side of the spike, so sampling the end points would miss it
+        assertEquals(0.5f, terrain.firstContact(390, 250, 410, 250), 0.001f);
+        // A falling path touches the surface exactly where it crosses y = 480
+        assertEquals(0.5f, terrain.firstContact(100, 470, 110, 490), 0.001f);
+        assertEquals(-1, terrain.firstContact(100, 300, 120, 320));
+    }
+}
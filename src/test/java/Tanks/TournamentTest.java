@@ -0,0 +1,33 @@
+package Tanks;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TournamentTest {
+
+    @Test
+    public void matchIsPlayedToTheFinalScoreboard() {
+        Tournament tournament = new Tournament("config.json", 1, 1, 2000, "B=random", 30 * 60 * Simulation.TICK_RATE, 1);
+        Tournament.MatchResult result = tournament.playMatch(0);
+
+        assertTrue(result.finished);
+        assertTrue(result.turns > 0);
+        int[] stats = result.players.get(result.winner);
+        assertNotNull(stats, "winner " + result.winner);
+        for (int[] other : result.players.values()) {
+            assertTrue(stats[0] >= other[0]);
+        }
+    }
+
+    @Test
+    public void wilsonIntervalStaysInsideZeroToOne() {
+        double[] none = Tournament.wilson(0, 10);
+        assertEquals(0, none[0], 1e-9);
+        assertTrue(none[1] > 0 && none[1] < 0.35);
+
+        double[] half = Tournament.wilson(50, 100);
+        assertEquals(0.5, (half[0] + half[1]) / 2, 1e-9);
+        assertEquals(0.404, half[0], 0.001);
+    }
+}